@@ -22,6 +22,7 @@ import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccess
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.ai.chat.messages.ToolResponseMessage;
 import org.springframework.ai.chat.metadata.Usage;
@@ -41,6 +42,9 @@ import org.springaicommunity.moonshot.api.MoonshotApi.*;
 import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletion.Choice;
 import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ChatCompletionFunction;
 import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotContentSink;
+import org.springaicommunity.moonshot.api.MoonshotFlushPolicy;
+import org.springaicommunity.moonshot.api.MoonshotStreamEvent;
 import org.springframework.ai.retry.RetryUtils;
 import org.springframework.ai.support.UsageCalculator;
 import org.springframework.ai.tool.definition.ToolDefinition;
@@ -52,9 +56,11 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import static org.springaicommunity.moonshot.api.MoonshotConstants.MOONSHOT_PROVIDER_NAME;
 
@@ -69,6 +75,8 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 
 	private static final Logger logger = LoggerFactory.getLogger(MoonshotChatModel.class);
 
+	private static final int MAX_CACHED_TOOL_SETS = 256;
+
 	private static final ChatModelObservationConvention DEFAULT_OBSERVATION_CONVENTION = new DefaultChatModelObservationConvention();
 
 	private static final ToolCallingManager DEFAULT_TOOL_CALLING_MANAGER = ToolCallingManager.builder().build();
@@ -98,11 +106,48 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 	 */
 	private final ToolExecutionEligibilityPredicate toolExecutionEligibilityPredicate;
 
+	/**
+	 * The function tools built for each set of resolved tool definitions, with their
+	 * schemas kept as raw JSON.
+	 */
+	private final Map<List<ToolDefinition>, List<FunctionTool>> functionToolCache = new ConcurrentHashMap<>();
+
 	/**
 	 * Conventions to use for generating observations.
 	 */
 	private ChatModelObservationConvention observationConvention = DEFAULT_OBSERVATION_CONVENTION;
 
+	/**
+	 * Executor used to start streamed tool calls as soon as their arguments are complete.
+	 * Speculative tool execution is disabled when null.
+	 */
+	private Executor speculativeToolExecutor;
+
+	/**
+	 * Coalescer applied to the content deltas of {@link #stream(Prompt)}, if any.
+	 */
+	private MoonshotDeltaCoalescer streamCoalescer;
+
+	/**
+	 * Maximum number of times a stream interrupted mid-generation is resumed.
+	 */
+	private int streamMaxResumes;
+
+	/**
+	 * Retry applied to the streams until their first chunk, if any.
+	 */
+	private MoonshotStreamRetry streamRetry;
+
+	/**
+	 * Policy applied to the tool responses sent back to the model, if any.
+	 */
+	private MoonshotToolResponsePolicy toolResponsePolicy;
+
+	/**
+	 * Selector of the tools relevant to each request, if any.
+	 */
+	private MoonshotToolSelector toolSelector;
+
 	public MoonshotChatModel(MoonshotApi moonshotApi, MoonshotChatOptions defaultOptions,
 			ToolCallingManager toolCallingManager, RetryTemplate retryTemplate,
 			ObservationRegistry observationRegistry) {
@@ -149,8 +194,13 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 	}
 
 	public ChatResponse internalCall(Prompt prompt, ChatResponse previousChatResponse) {
+		return internalCall(prompt, previousChatResponse, newConversation());
+	}
+
+	private ChatResponse internalCall(Prompt prompt, ChatResponse previousChatResponse,
+			MoonshotConversation conversation) {
 
-		ChatCompletionRequest request = createRequest(prompt, false);
+		ChatCompletionRequest request = createRequest(prompt, false, conversation);
 
 		ChatModelObservationContext observationContext = ChatModelObservationContext.builder()
 			.prompt(prompt)
@@ -215,7 +265,7 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 			else {
 				// Send the tool execution result back to the model.
 				return this.internalCall(new Prompt(toolExecutionResult.conversationHistory(), prompt.getOptions()),
-						response);
+						response, conversation);
 			}
 		}
 
@@ -234,14 +284,79 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 	@Override
 	public Flux<ChatResponse> stream(Prompt prompt) {
 		Prompt requestPrompt = buildRequestPrompt(prompt);
-		return internalStream(requestPrompt, null);
+		Flux<ChatResponse> responses = internalStream(requestPrompt, null);
+		return (this.streamCoalescer != null) ? this.streamCoalescer.coalesce(responses) : responses;
+	}
+
+	/**
+	 * Stream the response to the given prompt as {@link MoonshotStreamEvent}s, built
+	 * directly from the decoded chunks. Unlike {@link #stream(Prompt)}, no
+	 * {@link ChatResponse} is created per chunk and the stream is not aggregated, which
+	 * keeps the allocations per token to the event itself. Requested tool calls are
+	 * reported as events and are not executed.
+	 * @param prompt the prompt to send.
+	 * @return the stream of events.
+	 */
+	public Flux<MoonshotStreamEvent> streamEvents(Prompt prompt) {
+		Prompt requestPrompt = buildRequestPrompt(prompt);
+		return Flux.deferContextual(contextView -> {
+			ChatCompletionRequest request = createRequest(requestPrompt, true);
+
+			final ChatModelObservationContext observationContext = ChatModelObservationContext.builder()
+				.prompt(requestPrompt)
+				.provider(MOONSHOT_PROVIDER_NAME)
+				.build();
+
+			Observation observation = ChatModelObservationDocumentation.CHAT_MODEL_OPERATION.observation(
+					this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext,
+					this.observationRegistry);
+
+			observation.parentObservation(contextView.getOrDefault(ObservationThreadLocalAccessor.KEY, null)).start();
+
+			return retryStream(this.moonshotApi.chatCompletionEvents(request)).doOnError(observation::error)
+				.doFinally(s -> observation.stop())
+				.contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
+		});
+	}
+
+	/**
+	 * Stream the content of the response to the given prompt straight into the given
+	 * sink, without creating a {@link ChatResponse} per chunk. Requested tool calls are
+	 * not executed.
+	 * @param prompt the prompt to send.
+	 * @param sink the sink receiving the content deltas.
+	 * @param flushPolicy the policy deciding when the sink is flushed.
+	 * @return a {@link Mono} completing once all the content is written and flushed.
+	 * @see MoonshotApi#streamContent(ChatCompletionRequest, MoonshotContentSink,
+	 * MoonshotFlushPolicy)
+	 */
+	public Mono<Void> streamContent(Prompt prompt, MoonshotContentSink sink, MoonshotFlushPolicy flushPolicy) {
+		return Mono.defer(() -> {
+			ChatCompletionRequest request = createRequest(buildRequestPrompt(prompt), true);
+			return this.moonshotApi.streamContent(request, sink, flushPolicy);
+		});
 	}
 
 	public Flux<ChatResponse> internalStream(Prompt prompt, ChatResponse previousChatResponse) {
+		return internalStream(prompt, previousChatResponse, newConversation());
+	}
+
+	private Flux<ChatResponse> internalStream(Prompt prompt, ChatResponse previousChatResponse,
+			MoonshotConversation conversation) {
 		return Flux.deferContextual(contextView -> {
-			ChatCompletionRequest request = createRequest(prompt, true);
+			ChatCompletionRequest request = createRequest(prompt, true, conversation);
 
-			Flux<ChatCompletionChunk> completionChunks = this.moonshotApi.chatCompletionStream(request);
+			MoonshotSpeculativeToolExecution speculativeToolExecution = (this.speculativeToolExecutor != null
+					&& ToolCallingChatOptions.isInternalToolExecutionEnabled(prompt.getOptions()))
+							? new MoonshotSpeculativeToolExecution(this.toolCallingManager, prompt,
+									this.speculativeToolExecutor)
+							: null;
+
+			Flux<ChatCompletionChunk> completionChunks = MoonshotStreamResumption.resumable(request,
+					chatRequest -> retryStream((speculativeToolExecution != null)
+							? this.moonshotApi.chatCompletionStream(chatRequest, speculativeToolExecution::onEvent)
+							: this.moonshotApi.chatCompletionStream(chatRequest)),
+					this.streamMaxResumes);
 
 			// For chunked responses, only the first chunk contains the choice role.
 			// The rest of the chunks with same ID share the same role.
@@ -296,7 +411,9 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 							return Flux.defer(() -> {
 								// FIXME: bounded elastic needs to be used since tool calling
 								//  is currently only synchronous
-								var toolExecutionResult = this.toolCallingManager.executeToolCalls(prompt, response);
+								var toolExecutionResult = (speculativeToolExecution != null)
+										? speculativeToolExecution.executeToolCalls(response)
+										: this.toolCallingManager.executeToolCalls(prompt, response);
 								if (toolExecutionResult.returnDirect()) {
 									// Return tool execution result directly to the client.
 									return Flux.just(ChatResponse.builder().from(response)
@@ -306,7 +423,7 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 								else {
 									// Send the tool execution result back to the model.
 									return this.internalStream(new Prompt(toolExecutionResult.conversationHistory(), prompt.getOptions()),
-											response);
+											response, conversation);
 								}
 							}).subscribeOn(Schedulers.boundedElastic());
 						}
@@ -315,7 +432,14 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 						}
 					})
 					.doOnError(observation::error)
-					.doFinally(s -> observation.stop())
+					.doFinally(s -> {
+						if (speculativeToolExecution != null) {
+							// Drop the tool calls left pending by an error, a cancellation
+							// or a response that did not request them.
+							speculativeToolExecution.cancel();
+						}
+						observation.stop();
+					})
 					.contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
 			// @formatter:on
 
@@ -324,6 +448,11 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 		});
 	}
 
+	private <T> Flux<T> retryStream(Flux<T> stream) {
+		MoonshotStreamRetry retry = this.streamRetry;
+		return (retry != null) ? retry.apply(stream) : stream;
+	}
+
 	private ChatResponseMetadata from(ChatCompletion result) {
 		Assert.notNull(result, "Moonshot ChatCompletionResult must not be null");
 		return ChatResponseMetadata.builder()
@@ -357,26 +486,20 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 			}
 			return new ChatCompletion.Choice(cc.finishReason(), cc.index(), delta, cc.usage());
 		}).toList();
-		// Get the usage from the latest choice
-		MoonshotApi.Usage usage = choices.get(choices.size() - 1).usage();
+		// The usage is only reported by the last chunk of a choice, and with n > 1 a
+		// chunk may hold other choices without usage: take the last reported one.
+		MoonshotApi.Usage usage = null;
+		for (ChatCompletion.Choice choice : choices) {
+			usage = (choice.usage() != null ? choice.usage() : usage);
+		}
 		return new ChatCompletion(chunk.id(), choices, chunk.created(), chunk.model(), "chat.completion", usage);
 	}
 
 	Prompt buildRequestPrompt(Prompt prompt) {
-		MoonshotChatOptions runtimeOptions = null;
-		if (prompt.getOptions() != null) {
-			if (prompt.getOptions() instanceof ToolCallingChatOptions toolCallingChatOptions) {
-				runtimeOptions = ModelOptionsUtils.copyToTarget(toolCallingChatOptions, ToolCallingChatOptions.class,
-						MoonshotChatOptions.class);
-			}
-			else {
-				runtimeOptions = ModelOptionsUtils.copyToTarget(prompt.getOptions(), ChatOptions.class,
-						MoonshotChatOptions.class);
-			}
-		}
+		MoonshotChatOptions runtimeOptions = (prompt.getOptions() != null)
+				? MoonshotChatOptions.fromChatOptions(prompt.getOptions()) : null;
 
-		MoonshotChatOptions requestOptions = ModelOptionsUtils.merge(runtimeOptions, this.defaultOptions,
-				MoonshotChatOptions.class);
+		MoonshotChatOptions requestOptions = MoonshotChatOptions.merge(runtimeOptions, this.defaultOptions);
 
 		if (runtimeOptions != null) {
 			requestOptions.setInternalToolExecutionEnabled(
@@ -405,79 +528,197 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 	 * Accessible for testing.
 	 */
 	ChatCompletionRequest createRequest(Prompt prompt, boolean stream) {
-		List<ChatCompletionMessage> chatCompletionMessages = prompt.getInstructions().stream().map(message -> {
-			if (message.getMessageType() == MessageType.USER || message.getMessageType() == MessageType.SYSTEM) {
-				return List.of(new ChatCompletionMessage(message.getText(),
-						ChatCompletionMessage.Role.valueOf(message.getMessageType().name())));
-			}
-			else if (message.getMessageType() == MessageType.ASSISTANT) {
-				var assistantMessage = (AssistantMessage) message;
-				List<ToolCall> toolCalls = null;
-				if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
-					toolCalls = assistantMessage.getToolCalls().stream().map(toolCall -> {
-						var function = new ChatCompletionFunction(toolCall.name(), toolCall.arguments());
-						return new ToolCall(toolCall.id(), toolCall.type(), function);
-					}).toList();
-				}
-				return List.of(new ChatCompletionMessage(assistantMessage.getText(),
-						ChatCompletionMessage.Role.ASSISTANT, null, null, toolCalls));
-			}
-			else if (message.getMessageType() == MessageType.TOOL) {
-				ToolResponseMessage toolMessage = (ToolResponseMessage) message;
+		return createRequest(prompt, stream, null);
+	}
 
-				toolMessage.getResponses()
-					.forEach(response -> Assert.isTrue(response.id() != null, "ToolResponseMessage must have an id"));
-				return toolMessage.getResponses()
-					.stream()
-					.map(tr -> new ChatCompletionMessage(tr.responseData(), ChatCompletionMessage.Role.TOOL, tr.name(),
-							tr.id(), null))
-					.toList();
-			}
-			else {
-				throw new IllegalArgumentException("Unsupported message type: " + message.getMessageType());
+	private ChatCompletionRequest createRequest(Prompt prompt, boolean stream, MoonshotConversation conversation) {
+		List<ChatCompletionMessage> chatCompletionMessages;
+		if (conversation != null) {
+			chatCompletionMessages = conversation.messages(prompt.getInstructions());
+		}
+		else {
+			List<Message> instructions = prompt.getInstructions();
+			int latestToolTurn = MoonshotConversation.latestToolTurn(instructions);
+			chatCompletionMessages = new ArrayList<>(instructions.size());
+			for (int i = 0; i < instructions.size(); i++) {
+				addMessages(instructions.get(i), i >= latestToolTurn, chatCompletionMessages);
 			}
-		}).flatMap(List::stream).toList();
-
-		ChatCompletionRequest request = new ChatCompletionRequest(chatCompletionMessages, stream);
+		}
 
 		MoonshotChatOptions requestOptions = (MoonshotChatOptions) prompt.getOptions();
-		request = ModelOptionsUtils.merge(requestOptions, request, ChatCompletionRequest.class);
 
 		// Add the tool definitions to the request's tools parameter.
 		List<ToolDefinition> toolDefinitions = this.toolCallingManager.resolveToolDefinitions(requestOptions);
-		if (!CollectionUtils.isEmpty(toolDefinitions)) {
-			request = ModelOptionsUtils.merge(
-					MoonshotChatOptions.builder().tools(this.getFunctionTools(toolDefinitions)).build(), request,
-					ChatCompletionRequest.class);
+		List<FunctionTool> tools = !CollectionUtils.isEmpty(toolDefinitions) ? this.getFunctionTools(toolDefinitions)
+				: (requestOptions != null) ? requestOptions.getTools() : null;
+		MoonshotToolSelector toolSelector = this.toolSelector;
+		if (toolSelector != null && !CollectionUtils.isEmpty(toolDefinitions)) {
+			tools = selectFunctionTools(toolDefinitions, tools,
+					toolSelector.select(toolDefinitions, prompt.getInstructions()));
+		}
+
+		// The defaults of a request, overridden by the options set.
+		ChatCompletionRequest request = new ChatCompletionRequest(chatCompletionMessages, stream);
+		if (requestOptions == null) {
+			return new ChatCompletionRequest(chatCompletionMessages, request.model(), null, request.temperature(),
+					request.topP(), null, null, null, null, stream, tools, null);
 		}
+		return new ChatCompletionRequest(chatCompletionMessages,
+				ModelOptionsUtils.mergeOption(requestOptions.getModel(), request.model()),
+				requestOptions.getMaxTokens(),
+				ModelOptionsUtils.mergeOption(requestOptions.getTemperature(), request.temperature()),
+				ModelOptionsUtils.mergeOption(requestOptions.getTopP(), request.topP()), requestOptions.getN(),
+				requestOptions.getFrequencyPenalty(), requestOptions.getPresencePenalty(), requestOptions.getStop(),
+				stream, tools, requestOptions.getToolChoice(), requestOptions.getResponseFormat());
+	}
 
-		return request;
+	private MoonshotConversation newConversation() {
+		return new MoonshotConversation(this::addMessages, this.toolResponsePolicy != null,
+				this.moonshotApi.isCanonicalRequests());
 	}
 
-	private ChatOptions buildRequestOptions(MoonshotApi.ChatCompletionRequest request) {
-		return ChatOptions.builder()
-			.model(request.model())
-			.frequencyPenalty(request.frequencyPenalty())
-			.maxTokens(request.maxTokens())
-			.presencePenalty(request.presencePenalty())
-			.stopSequences(request.stop())
-			.temperature(request.temperature())
-			.topP(request.topP())
-			.build();
+	/**
+	 * Convert the given message, adding the resulting messages to the given list.
+	 * @param latest whether the message is part of the latest tool turn.
+	 */
+	private void addMessages(Message message, boolean latest, List<ChatCompletionMessage> messages) {
+		if (message.getMessageType() == MessageType.USER || message.getMessageType() == MessageType.SYSTEM) {
+			messages.add(new ChatCompletionMessage(message.getText(),
+					ChatCompletionMessage.Role.valueOf(message.getMessageType().name())));
+		}
+		else if (message.getMessageType() == MessageType.ASSISTANT) {
+			var assistantMessage = (AssistantMessage) message;
+			List<ToolCall> toolCalls = null;
+			if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
+				toolCalls = new ArrayList<>(assistantMessage.getToolCalls().size());
+				for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+					var function = new ChatCompletionFunction(toolCall.name(), toolCall.arguments());
+					toolCalls.add(new ToolCall(toolCall.id(), toolCall.type(), function));
+				}
+			}
+			messages.add(new ChatCompletionMessage(assistantMessage.getText(), ChatCompletionMessage.Role.ASSISTANT,
+					null, null, toolCalls));
+		}
+		else if (message.getMessageType() == MessageType.TOOL) {
+			ToolResponseMessage toolMessage = (ToolResponseMessage) message;
+			for (ToolResponseMessage.ToolResponse response : toolMessage.getResponses()) {
+				Assert.isTrue(response.id() != null, "ToolResponseMessage must have an id");
+				MoonshotToolResponsePolicy policy = this.toolResponsePolicy;
+				String content = (policy != null) ? policy.apply(response, latest) : response.responseData();
+				messages.add(new ChatCompletionMessage(content, ChatCompletionMessage.Role.TOOL, response.name(),
+						response.id(), null));
+			}
+		}
+		else {
+			throw new IllegalArgumentException("Unsupported message type: " + message.getMessageType());
+		}
+	}
+
+	/**
+	 * @return the function tools of the selected tool definitions, which are a
+	 * subsequence of the given ones.
+	 */
+	private static List<FunctionTool> selectFunctionTools(List<ToolDefinition> toolDefinitions,
+			List<FunctionTool> functionTools, List<ToolDefinition> selection) {
+		if (selection.size() == toolDefinitions.size()) {
+			return functionTools;
+		}
+		List<FunctionTool> selected = new ArrayList<>(selection.size());
+		for (int i = 0, j = 0; i < toolDefinitions.size() && j < selection.size(); i++) {
+			if (toolDefinitions.get(i) == selection.get(j)) {
+				selected.add(functionTools.get(i));
+				j++;
+			}
+		}
+		return selected;
 	}
 
 	private List<FunctionTool> getFunctionTools(List<ToolDefinition> toolDefinitions) {
-		return toolDefinitions.stream().map(toolDefinition -> {
-			var function = new FunctionTool.Function(toolDefinition.description(), toolDefinition.name(),
-					toolDefinition.inputSchema());
-			return new FunctionTool(function);
-		}).toList();
+		List<FunctionTool> functionTools = this.functionToolCache.get(toolDefinitions);
+		if (functionTools == null) {
+			functionTools = toolDefinitions.stream().map(toolDefinition -> {
+				var function = new FunctionTool.Function(toolDefinition.description(), toolDefinition.name(),
+						toolDefinition.inputSchema());
+				return new FunctionTool(function);
+			}).toList();
+			if (this.functionToolCache.size() >= MAX_CACHED_TOOL_SETS) {
+				// Tool sets built on the fly must not grow the cache without bound.
+				this.functionToolCache.clear();
+			}
+			this.functionToolCache.put(List.copyOf(toolDefinitions), functionTools);
+		}
+		return functionTools;
 	}
 
 	public void setObservationConvention(ChatModelObservationConvention observationConvention) {
 		this.observationConvention = observationConvention;
 	}
 
+	/**
+	 * Enable speculative tool execution on the streaming path. Each streamed tool call is
+	 * started on the given executor as soon as its arguments form a complete JSON object,
+	 * while the model is still streaming the remaining tool calls. Only use it with tools
+	 * that are safe to run before the response is complete: a tool call whose final
+	 * arguments differ from the speculated ones is executed a second time.
+	 * @param speculativeToolExecutor the executor running the tool calls, or null to
+	 * disable speculative tool execution.
+	 */
+	public void setSpeculativeToolExecutor(Executor speculativeToolExecutor) {
+		this.speculativeToolExecutor = speculativeToolExecutor;
+	}
+
+	/**
+	 * Coalesce the content deltas streamed by {@link #stream(Prompt)}.
+	 * @param streamCoalescer the coalescer to apply, or null to relay every delta.
+	 */
+	public void setStreamCoalescer(MoonshotDeltaCoalescer streamCoalescer) {
+		this.streamCoalescer = streamCoalescer;
+	}
+
+	/**
+	 * Resume the streams interrupted mid-generation. The content received so far is sent
+	 * back as a partial assistant message, the model continues it and the continuation is
+	 * appended to the same stream, instead of the stream failing. Streams with tool calls
+	 * or several choices are not resumed.
+	 * @param streamMaxResumes the maximum number of times a stream is resumed, 0 to
+	 * disable resumption.
+	 */
+	public void setStreamMaxResumes(int streamMaxResumes) {
+		Assert.isTrue(streamMaxResumes >= 0, "streamMaxResumes must not be negative");
+		this.streamMaxResumes = streamMaxResumes;
+	}
+
+	/**
+	 * Retry the streams of {@link #stream(Prompt)} and {@link #streamEvents(Prompt)} that
+	 * fail before their first chunk. Unlike the {@link RetryTemplate} of
+	 * {@link #call(Prompt)}, the retries are bounded by the budget of the given retry.
+	 * @param streamRetry the retry to apply, or null to disable retries.
+	 */
+	public void setStreamRetry(MoonshotStreamRetry streamRetry) {
+		this.streamRetry = streamRetry;
+	}
+
+	/**
+	 * Rewrite the tool responses sent back to the model, for instance to minify, cap or
+	 * elide them. The policy is applied once per tool response and conversation, and
+	 * again when the tool response stops being part of the latest tool turn.
+	 * @param toolResponsePolicy the policy to apply, or null to send the tool responses
+	 * as is.
+	 * @see MoonshotToolResponsePolicy
+	 */
+	public void setToolResponsePolicy(MoonshotToolResponsePolicy toolResponsePolicy) {
+		this.toolResponsePolicy = toolResponsePolicy;
+	}
+
+	/**
+	 * Only send the tools relevant to each request, instead of all the resolved tools.
+	 * @param toolSelector the selector of the tools, or null to send all the tools.
+	 * @see MoonshotToolSelector
+	 */
+	public void setToolSelector(MoonshotToolSelector toolSelector) {
+		this.toolSelector = toolSelector;
+	}
+
 	public static Builder builder() {
 		return new Builder();
 	}
@@ -499,6 +740,18 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 
 		private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
 
+		private Executor speculativeToolExecutor;
+
+		private MoonshotDeltaCoalescer streamCoalescer;
+
+		private int streamMaxResumes;
+
+		private MoonshotStreamRetry streamRetry;
+
+		private MoonshotToolResponsePolicy toolResponsePolicy;
+
+		private MoonshotToolSelector toolSelector;
+
 		private Builder() {
 		}
 
@@ -533,13 +786,47 @@ public class MoonshotChatModel implements ChatModel, StreamingChatModel {
 			return this;
 		}
 
+		public Builder speculativeToolExecutor(Executor speculativeToolExecutor) {
+			this.speculativeToolExecutor = speculativeToolExecutor;
+			return this;
+		}
+
+		public Builder streamCoalescer(MoonshotDeltaCoalescer streamCoalescer) {
+			this.streamCoalescer = streamCoalescer;
+			return this;
+		}
+
+		public Builder streamMaxResumes(int streamMaxResumes) {
+			this.streamMaxResumes = streamMaxResumes;
+			return this;
+		}
+
+		public Builder streamRetry(MoonshotStreamRetry streamRetry) {
+			this.streamRetry = streamRetry;
+			return this;
+		}
+
+		public Builder toolResponsePolicy(MoonshotToolResponsePolicy toolResponsePolicy) {
+			this.toolResponsePolicy = toolResponsePolicy;
+			return this;
+		}
+
+		public Builder toolSelector(MoonshotToolSelector toolSelector) {
+			this.toolSelector = toolSelector;
+			return this;
+		}
+
 		public MoonshotChatModel build() {
-			if (this.toolCallingManager != null) {
-				return new MoonshotChatModel(this.moonshotApi, this.defaultOptions, this.toolCallingManager,
-						this.retryTemplate, this.observationRegistry, this.toolExecutionEligibilityPredicate);
-			}
-			return new MoonshotChatModel(this.moonshotApi, this.defaultOptions, DEFAULT_TOOL_CALLING_MANAGER,
+			MoonshotChatModel chatModel = new MoonshotChatModel(this.moonshotApi, this.defaultOptions,
+					(this.toolCallingManager != null) ? this.toolCallingManager : DEFAULT_TOOL_CALLING_MANAGER,
 					this.retryTemplate, this.observationRegistry, this.toolExecutionEligibilityPredicate);
+			chatModel.setSpeculativeToolExecutor(this.speculativeToolExecutor);
+			chatModel.setStreamCoalescer(this.streamCoalescer);
+			chatModel.setStreamMaxResumes(this.streamMaxResumes);
+			chatModel.setStreamRetry(this.streamRetry);
+			chatModel.setToolResponsePolicy(this.toolResponsePolicy);
+			chatModel.setToolSelector(this.toolSelector);
+			return chatModel;
 		}
 
 	}
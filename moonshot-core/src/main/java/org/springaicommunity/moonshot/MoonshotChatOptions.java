@@ -19,6 +19,7 @@ package org.springaicommunity.moonshot;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.model.ModelOptionsUtils;
 import org.springframework.ai.model.tool.ToolCallingChatOptions;
 import org.springaicommunity.moonshot.api.MoonshotApi;
@@ -110,6 +111,13 @@ public class MoonshotChatOptions implements ToolCallingChatOptions {
 	 */
 	private @JsonProperty("user") String user;
 
+	/**
+	 * The format of the generated message. Set to
+	 * {@link MoonshotApi.ResponseFormat.Type#JSON_OBJECT} to make the model generate a
+	 * valid JSON object.
+	 */
+	private @JsonProperty("response_format") MoonshotApi.ResponseFormat responseFormat;
+
 	/**
 	 * Collection of {@link ToolCallback}s to be used for tool calling in the chat
 	 * completion requests.
@@ -152,6 +160,7 @@ public class MoonshotChatOptions implements ToolCallingChatOptions {
 			.tools(fromOptions.getTools())
 			.toolChoice(fromOptions.getToolChoice())
 			.user(fromOptions.getUser())
+			.responseFormat(fromOptions.getResponseFormat())
 			.toolCallbacks(
 					fromOptions.getToolCallbacks() != null ? new ArrayList<>(fromOptions.getToolCallbacks()) : null)
 			.toolNames(fromOptions.getToolNames() != null ? new HashSet<>(fromOptions.getToolNames()) : null)
@@ -160,6 +169,70 @@ public class MoonshotChatOptions implements ToolCallingChatOptions {
 			.build();
 	}
 
+	/**
+	 * Convert the given options to Moonshot options, copying the portable and tool
+	 * calling options field by field, as
+	 * {@link ModelOptionsUtils#copyToTarget(Object, Class, Class)} does through bean
+	 * introspection. Moonshot options are returned as is.
+	 * @param options the options to convert.
+	 * @return the Moonshot options.
+	 */
+	static MoonshotChatOptions fromChatOptions(ChatOptions options) {
+		if (options instanceof MoonshotChatOptions moonshotOptions) {
+			return moonshotOptions;
+		}
+		MoonshotChatOptions target = new MoonshotChatOptions();
+		target.model = options.getModel();
+		target.frequencyPenalty = options.getFrequencyPenalty();
+		target.maxTokens = options.getMaxTokens();
+		target.presencePenalty = options.getPresencePenalty();
+		target.stop = options.getStopSequences();
+		target.temperature = options.getTemperature();
+		target.topP = options.getTopP();
+		if (options instanceof ToolCallingChatOptions toolCallingOptions) {
+			if (toolCallingOptions.getToolCallbacks() != null) {
+				target.setToolCallbacks(toolCallingOptions.getToolCallbacks());
+			}
+			if (toolCallingOptions.getToolNames() != null) {
+				target.setToolNames(toolCallingOptions.getToolNames());
+			}
+			if (toolCallingOptions.getToolContext() != null) {
+				target.setToolContext(toolCallingOptions.getToolContext());
+			}
+			target.setInternalToolExecutionEnabled(toolCallingOptions.getInternalToolExecutionEnabled());
+		}
+		return target;
+	}
+
+	/**
+	 * Merge the request options of the given options into the given defaults, each
+	 * non-null option overriding the default, as
+	 * {@link ModelOptionsUtils#merge(Object, Object, Class)} does through JSON maps. The
+	 * tool calling options are not merged.
+	 * @param options the options, or null to only use the defaults.
+	 * @param defaults the default options.
+	 * @return new merged options.
+	 */
+	static MoonshotChatOptions merge(@Nullable MoonshotChatOptions options, MoonshotChatOptions defaults) {
+		MoonshotChatOptions source = (options != null) ? options : new MoonshotChatOptions();
+		MoonshotChatOptions merged = new MoonshotChatOptions();
+		merged.model = ModelOptionsUtils.mergeOption(source.model, defaults.model);
+		merged.maxTokens = ModelOptionsUtils.mergeOption(source.maxTokens, defaults.maxTokens);
+		merged.temperature = ModelOptionsUtils.mergeOption(source.temperature, defaults.temperature);
+		merged.topP = ModelOptionsUtils.mergeOption(source.topP, defaults.topP);
+		merged.n = ModelOptionsUtils.mergeOption(source.n, defaults.n);
+		merged.presencePenalty = ModelOptionsUtils.mergeOption(source.presencePenalty, defaults.presencePenalty);
+		merged.frequencyPenalty = ModelOptionsUtils.mergeOption(source.frequencyPenalty, defaults.frequencyPenalty);
+		List<String> stop = ModelOptionsUtils.mergeOption(source.stop, defaults.stop);
+		merged.stop = (stop != null) ? new ArrayList<>(stop) : null;
+		List<MoonshotApi.FunctionTool> tools = ModelOptionsUtils.mergeOption(source.tools, defaults.tools);
+		merged.tools = (tools != null) ? new ArrayList<>(tools) : null;
+		merged.toolChoice = ModelOptionsUtils.mergeOption(source.toolChoice, defaults.toolChoice);
+		merged.user = ModelOptionsUtils.mergeOption(source.user, defaults.user);
+		merged.responseFormat = ModelOptionsUtils.mergeOption(source.responseFormat, defaults.responseFormat);
+		return merged;
+	}
+
 	public List<MoonshotApi.FunctionTool> getTools() {
 		return tools;
 	}
@@ -307,6 +380,14 @@ public class MoonshotChatOptions implements ToolCallingChatOptions {
 		this.user = user;
 	}
 
+	public MoonshotApi.ResponseFormat getResponseFormat() {
+		return this.responseFormat;
+	}
+
+	public void setResponseFormat(MoonshotApi.ResponseFormat responseFormat) {
+		this.responseFormat = responseFormat;
+	}
+
 	@Override
 	@JsonIgnore
 	public Integer getTopK() {
@@ -331,8 +412,8 @@ public class MoonshotChatOptions implements ToolCallingChatOptions {
 	@Override
 	public int hashCode() {
 		return Objects.hash(this.model, this.frequencyPenalty, this.maxTokens, this.n, this.presencePenalty, this.stop,
-				this.temperature, this.topP, this.tools, this.toolChoice, this.user, this.toolCallbacks, this.toolNames,
-				this.internalToolExecutionEnabled, this.toolContext);
+				this.temperature, this.topP, this.tools, this.toolChoice, this.user, this.responseFormat,
+				this.toolCallbacks, this.toolNames, this.internalToolExecutionEnabled, this.toolContext);
 	}
 
 	@Override
@@ -349,7 +430,8 @@ public class MoonshotChatOptions implements ToolCallingChatOptions {
 				&& Objects.equals(this.presencePenalty, other.presencePenalty) && Objects.equals(this.stop, other.stop)
 				&& Objects.equals(this.temperature, other.temperature) && Objects.equals(this.topP, other.topP)
 				&& Objects.equals(this.tools, other.tools) && Objects.equals(this.toolChoice, other.toolChoice)
-				&& Objects.equals(this.user, other.user) && Objects.equals(this.toolCallbacks, other.toolCallbacks)
+				&& Objects.equals(this.user, other.user) && Objects.equals(this.responseFormat, other.responseFormat)
+				&& Objects.equals(this.toolCallbacks, other.toolCallbacks)
 				&& Objects.equals(this.toolNames, other.toolNames)
 				&& Objects.equals(this.toolContext, other.toolContext)
 				&& Objects.equals(this.internalToolExecutionEnabled, other.internalToolExecutionEnabled);
@@ -432,6 +514,11 @@ public class MoonshotChatOptions implements ToolCallingChatOptions {
 			return this;
 		}
 
+		public Builder responseFormat(MoonshotApi.ResponseFormat responseFormat) {
+			this.options.responseFormat = responseFormat;
+			return this;
+		}
+
 		public Builder toolCallbacks(List<ToolCallback> toolCallbacks) {
 			this.options.setToolCallbacks(toolCallbacks);
 			return this;
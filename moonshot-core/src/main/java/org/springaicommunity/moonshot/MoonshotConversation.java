@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotConversationSession;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The conversation of a tool calling loop. Each turn of the loop sends the instructions
+ * of the previous turn followed by the assistant message and the tool responses, the
+ * instructions already sent are neither converted nor encoded again, only the appended
+ * ones are added to the {@link MoonshotConversationSession}.
+ * <p>
+ * The instructions are compared with {@link Object#equals(Object)}, as the tool calling
+ * manager copies the prompt. When a turn does not extend the previous one, the session is
+ * truncated to the common instructions. If the conversion depends on the latest tool
+ * turn, the tool responses that are no longer part of it are converted again too.
+ * </p>
+ *
+ * @author agent
+ */
+final class MoonshotConversation {
+
+	private final Converter converter;
+
+	private final boolean latestSensitive;
+
+	private final List<Message> instructions = new ArrayList<>();
+
+	/**
+	 * Whether each instruction was converted as part of the latest tool turn.
+	 */
+	private final List<Boolean> latest = new ArrayList<>();
+
+	/**
+	 * The size of the session after the messages of each instruction.
+	 */
+	private final List<Integer> ends = new ArrayList<>();
+
+	private final MoonshotConversationSession session;
+
+	/**
+	 * @param converter converts the instructions.
+	 * @param latestSensitive whether the conversion of the tool responses depends on
+	 * their being part of the latest tool turn.
+	 */
+	MoonshotConversation(Converter converter, boolean latestSensitive) {
+		this(converter, latestSensitive, false);
+	}
+
+	/**
+	 * @param converter converts the instructions.
+	 * @param latestSensitive whether the conversion of the tool responses depends on
+	 * their being part of the latest tool turn.
+	 * @param canonical whether the messages are encoded canonically.
+	 */
+	MoonshotConversation(Converter converter, boolean latestSensitive, boolean canonical) {
+		this.converter = converter;
+		this.latestSensitive = latestSensitive;
+		this.session = new MoonshotConversationSession(canonical);
+	}
+
+	/**
+	 * @param instructions the instructions of the turn.
+	 * @return the messages of the turn.
+	 */
+	synchronized List<ChatCompletionMessage> messages(List<Message> instructions) {
+		int latestToolTurn = latestToolTurn(instructions);
+		int common = 0;
+		int max = Math.min(instructions.size(), this.instructions.size());
+		while (common < max && Objects.equals(instructions.get(common), this.instructions.get(common))
+				&& (!this.latestSensitive || this.latest.get(common) == (common >= latestToolTurn))) {
+			common++;
+		}
+		if (common < this.instructions.size()) {
+			this.instructions.subList(common, this.instructions.size()).clear();
+			this.latest.subList(common, this.latest.size()).clear();
+			this.ends.subList(common, this.ends.size()).clear();
+			this.session.truncate((common > 0) ? this.ends.get(common - 1) : 0);
+		}
+		int size = this.session.size();
+		List<ChatCompletionMessage> appended = new ArrayList<>();
+		List<Boolean> latest = new ArrayList<>();
+		List<Integer> ends = new ArrayList<>();
+		for (int i = common; i < instructions.size(); i++) {
+			latest.add(i >= latestToolTurn);
+			this.converter.convert(instructions.get(i), i >= latestToolTurn, appended);
+			ends.add(size + appended.size());
+		}
+		this.session.append(appended);
+		this.instructions.addAll(instructions.subList(common, instructions.size()));
+		this.latest.addAll(latest);
+		this.ends.addAll(ends);
+		return this.session.messages();
+	}
+
+	/**
+	 * @return the index of the first of the tool response messages ending the given
+	 * instructions, the size of the instructions if they do not end with one.
+	 */
+	static int latestToolTurn(List<Message> instructions) {
+		int index = instructions.size();
+		while (index > 0 && instructions.get(index - 1).getMessageType() == MessageType.TOOL) {
+			index--;
+		}
+		return index;
+	}
+
+	/**
+	 * Converts an instruction into chat completion messages.
+	 */
+	@FunctionalInterface
+	interface Converter {
+
+		/**
+		 * @param instruction the instruction to convert.
+		 * @param latest whether the instruction is part of the latest tool turn.
+		 * @param messages the messages to add the converted instruction to.
+		 */
+		void convert(Message instruction, boolean latest, List<ChatCompletionMessage> messages);
+
+	}
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.reactivestreams.Subscription;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the content deltas of a streamed chat response. Consecutive content-only
+ * responses are merged into one until their content reaches a size threshold or the first
+ * of them has waited for the latency budget. Any other response, such as a tool call or a
+ * finish reason, flushes the pending content and is relayed immediately.
+ * <p>
+ * Only responses made of a single generation are merged, so the coalescer is meant for
+ * streams with a single choice.
+ * </p>
+ *
+ * @author agent
+ */
+public class MoonshotDeltaCoalescer {
+
+	private final int maxBytes;
+
+	private final Duration maxLatency;
+
+	private final Scheduler scheduler;
+
+	/**
+	 * Create a coalescer using the parallel scheduler for the latency budget.
+	 * @param maxBytes the UTF-8 size of the content that flushes the pending deltas.
+	 * @param maxLatency the maximum time a delta is held back.
+	 */
+	public MoonshotDeltaCoalescer(int maxBytes, Duration maxLatency) {
+		this(maxBytes, maxLatency, Schedulers.parallel());
+	}
+
+	/**
+	 * Create a coalescer.
+	 * @param maxBytes the UTF-8 size of the content that flushes the pending deltas.
+	 * @param maxLatency the maximum time a delta is held back.
+	 * @param scheduler the scheduler enforcing the latency budget.
+	 */
+	public MoonshotDeltaCoalescer(int maxBytes, Duration maxLatency, Scheduler scheduler) {
+		Assert.isTrue(maxBytes > 0, "maxBytes must be positive");
+		Assert.notNull(maxLatency, "maxLatency cannot be null");
+		Assert.isTrue(!maxLatency.isNegative() && !maxLatency.isZero(), "maxLatency must be positive");
+		Assert.notNull(scheduler, "scheduler cannot be null");
+		this.maxBytes = maxBytes;
+		this.maxLatency = maxLatency;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Coalesce the content deltas of the given stream. The upstream deltas are requested
+	 * one at a time while the subscriber has demand, so a slow subscriber holds back the
+	 * upstream instead of having the coalesced responses buffered for it.
+	 * @param responses the streamed chat responses.
+	 * @return the coalesced stream.
+	 */
+	public Flux<ChatResponse> coalesce(Flux<ChatResponse> responses) {
+		return Flux.create(sink -> {
+			CoalescingSubscriber subscriber = new CoalescingSubscriber(sink);
+			sink.onDispose(subscriber);
+			sink.onRequest(subscriber::onDownstreamRequest);
+			responses.subscribe(subscriber);
+		});
+	}
+
+	/**
+	 * @return true if the response only carries content for a single generation.
+	 */
+	static boolean isContentDelta(ChatResponse response) {
+		if (response.getResults().size() != 1) {
+			return false;
+		}
+		Generation generation = response.getResult();
+		AssistantMessage message = generation.getOutput();
+		return message != null && message.getText() != null && !message.hasToolCalls()
+				&& !StringUtils.hasText(generation.getMetadata().getFinishReason());
+	}
+
+	/**
+	 * @return a copy of the given content delta response holding the given content.
+	 */
+	static ChatResponse withContent(ChatResponse template, String content) {
+		Generation generation = template.getResult();
+		var message = new AssistantMessage(content, generation.getOutput().getMetadata());
+		return new ChatResponse(List.of(new Generation(message, generation.getMetadata())), template.getMetadata());
+	}
+
+	private static int utf8Length(String text) {
+		int length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			length += (c < 0x80) ? 1 : (c < 0x800 || Character.isSurrogate(c)) ? 2 : 3;
+		}
+		return length;
+	}
+
+	/**
+	 * Coalesces the deltas of a single subscription. The responses ready to be emitted
+	 * are queued until the subscriber requests them, and the next upstream delta is only
+	 * requested when that queue is empty and the subscriber has demand, so the queue
+	 * holds at most a flushed content and the response that flushed it.
+	 */
+	private final class CoalescingSubscriber extends BaseSubscriber<ChatResponse> {
+
+		private final FluxSink<ChatResponse> sink;
+
+		private final List<ChatResponse> pending = new ArrayList<>();
+
+		private final ArrayDeque<ChatResponse> ready = new ArrayDeque<>(2);
+
+		private int pendingBytes;
+
+		private Disposable timer;
+
+		/**
+		 * Incremented on each flush, so that a stale timeout does not flush the next
+		 * window.
+		 */
+		private long window;
+
+		/**
+		 * The demand of the subscriber not satisfied yet.
+		 */
+		private long requested;
+
+		private boolean subscribed;
+
+		/**
+		 * Whether a delta was requested from upstream and not received yet.
+		 */
+		private boolean upstreamRequested;
+
+		private boolean done;
+
+		private Throwable error;
+
+		private boolean terminated;
+
+		CoalescingSubscriber(FluxSink<ChatResponse> sink) {
+			this.sink = sink;
+		}
+
+		@Override
+		public Context currentContext() {
+			return Context.of(this.sink.contextView());
+		}
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			synchronized (this) {
+				this.subscribed = true;
+				drain();
+			}
+		}
+
+		void onDownstreamRequest(long n) {
+			synchronized (this) {
+				this.requested = Operators.addCap(this.requested, n);
+				drain();
+			}
+		}
+
+		@Override
+		protected void hookOnNext(ChatResponse response) {
+			synchronized (this) {
+				this.upstreamRequested = false;
+				if (!isContentDelta(response)) {
+					flush();
+					this.ready.add(response);
+				}
+				else {
+					this.pending.add(response);
+					this.pendingBytes += utf8Length(response.getResult().getOutput().getText());
+					if (this.pendingBytes >= MoonshotDeltaCoalescer.this.maxBytes) {
+						flush();
+					}
+					else if (this.timer == null) {
+						long window = this.window;
+						this.timer = MoonshotDeltaCoalescer.this.scheduler.schedule(() -> flushOnTimeout(window),
+								MoonshotDeltaCoalescer.this.maxLatency.toNanos(), TimeUnit.NANOSECONDS);
+					}
+				}
+				drain();
+			}
+		}
+
+		@Override
+		protected void hookOnComplete() {
+			synchronized (this) {
+				flush();
+				this.done = true;
+				drain();
+			}
+		}
+
+		@Override
+		protected void hookOnError(Throwable throwable) {
+			synchronized (this) {
+				flush();
+				this.error = throwable;
+				this.done = true;
+				drain();
+			}
+		}
+
+		@Override
+		protected void hookFinally(SignalType type) {
+			synchronized (this) {
+				cancelTimer();
+				this.pending.clear();
+				if (type == SignalType.CANCEL) {
+					this.ready.clear();
+				}
+			}
+		}
+
+		private void flushOnTimeout(long window) {
+			synchronized (this) {
+				if (this.window == window) {
+					flush();
+					drain();
+				}
+			}
+		}
+
+		/**
+		 * Move the pending deltas, merged, to the responses ready to be emitted.
+		 */
+		private void flush() {
+			cancelTimer();
+			if (this.pending.isEmpty()) {
+				return;
+			}
+			ChatResponse merged = (this.pending.size() == 1) ? this.pending.get(0) : merge(this.pending);
+			this.pending.clear();
+			this.pendingBytes = 0;
+			this.window++;
+			this.ready.add(merged);
+		}
+
+		/**
+		 * Emit the ready responses the subscriber asked for, then terminate or request
+		 * the next delta.
+		 */
+		private void drain() {
+			if (this.terminated) {
+				return;
+			}
+			while (this.requested > 0 && !this.ready.isEmpty()) {
+				this.requested--;
+				this.sink.next(this.ready.poll());
+			}
+			if (!this.ready.isEmpty()) {
+				return;
+			}
+			if (this.done) {
+				this.terminated = true;
+				if (this.error != null) {
+					this.sink.error(this.error);
+				}
+				else {
+					this.sink.complete();
+				}
+			}
+			else if (this.requested > 0 && this.subscribed && !this.upstreamRequested) {
+				this.upstreamRequested = true;
+				request(1);
+			}
+		}
+
+		private void cancelTimer() {
+			if (this.timer != null) {
+				this.timer.dispose();
+				this.timer = null;
+			}
+		}
+
+		private static ChatResponse merge(List<ChatResponse> responses) {
+			StringBuilder content = new StringBuilder();
+			for (ChatResponse response : responses) {
+				content.append(response.getResult().getOutput().getText());
+			}
+			return withContent(responses.get(responses.size() - 1), content.toString());
+		}
+
+	}
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.StreamingChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Operators;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of streamed generations shared by many subscribers, keyed by a caller supplied
+ * id. The first subscriber for an id starts a single upstream stream, the subscribers
+ * joining later first replay what was generated so far and then follow the live stream.
+ * <p>
+ * The replay buffer is compact: consecutive content deltas are kept as a single text
+ * segment, replayed as one response built from the last delta of the segment, and only
+ * responses carrying tool calls or a finish reason are kept as is. The content kept for
+ * replay is bounded, a subscriber joining a stream that exceeded the bound fails with an
+ * {@link IllegalStateException}. The upstream stream is cancelled once all its
+ * subscribers are gone, and an id is released when its stream terminates.
+ * </p>
+ * <p>
+ * Each subscriber is sent the responses it requested. The responses a slow subscriber has
+ * not requested yet are queued in the same compact form, so that its pending content
+ * deltas are coalesced. A subscriber falling behind the live stream by more than the
+ * replay bound fails with an {@link IllegalStateException}, the other subscribers are not
+ * affected.
+ * </p>
+ *
+ * @author agent
+ */
+public class MoonshotSharedStreams {
+
+	private final StreamingChatModel chatModel;
+
+	private final int maxReplayChars;
+
+	private final Map<String, SharedStream> streams = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a registry of shared streams.
+	 * @param chatModel the model generating the streams.
+	 * @param maxReplayChars the maximum number of content characters kept for replay per
+	 * stream, and queued per subscriber.
+	 */
+	public MoonshotSharedStreams(StreamingChatModel chatModel, int maxReplayChars) {
+		Assert.notNull(chatModel, "chatModel cannot be null");
+		Assert.isTrue(maxReplayChars > 0, "maxReplayChars must be positive");
+		this.chatModel = chatModel;
+		this.maxReplayChars = maxReplayChars;
+	}
+
+	/**
+	 * Join the stream with the given id, starting it with the given prompt if it is not
+	 * running yet.
+	 * @param id the id of the shared stream.
+	 * @param prompt the prompt starting the stream, ignored if the stream is running.
+	 * @return the replayed and live responses of the stream.
+	 */
+	public Flux<ChatResponse> stream(String id, Prompt prompt) {
+		Assert.hasText(id, "id cannot be empty");
+		Assert.notNull(prompt, "prompt cannot be null");
+		SharedStream stream = this.streams.computeIfAbsent(id, key -> new SharedStream(key, prompt));
+		return Flux.create(stream::join);
+	}
+
+	/**
+	 * @param id the id of a shared stream.
+	 * @return true if the stream with the given id is running.
+	 */
+	public boolean isActive(String id) {
+		return this.streams.containsKey(id);
+	}
+
+	private final class SharedStream {
+
+		private final String id;
+
+		private final Prompt prompt;
+
+		private final Segments replay = new Segments();
+
+		private final List<Subscriber> subscribers = new ArrayList<>();
+
+		private boolean overflow;
+
+		private boolean started;
+
+		private boolean terminated;
+
+		private Throwable error;
+
+		private Disposable upstream;
+
+		SharedStream(String id, Prompt prompt) {
+			this.id = id;
+			this.prompt = prompt;
+		}
+
+		void join(FluxSink<ChatResponse> sink) {
+			boolean start;
+			synchronized (this) {
+				if (this.overflow) {
+					sink.error(new IllegalStateException(
+							"The replay buffer of shared stream '" + this.id + "' overflowed, it cannot be joined"));
+					return;
+				}
+				Subscriber subscriber = new Subscriber(sink, this.replay.snapshot());
+				sink.onRequest(n -> request(subscriber, n));
+				if (this.terminated) {
+					subscriber.done = true;
+					drain(subscriber);
+					return;
+				}
+				this.subscribers.add(subscriber);
+				sink.onDispose(() -> leave(subscriber));
+				start = !this.started;
+				this.started = true;
+			}
+			if (start) {
+				Disposable upstream = MoonshotSharedStreams.this.chatModel.stream(this.prompt)
+					.subscribe(this::onNext, this::onError, this::onComplete);
+				synchronized (this) {
+					this.upstream = upstream;
+					if (this.subscribers.isEmpty()) {
+						// Every subscriber left while the stream was starting.
+						upstream.dispose();
+					}
+				}
+			}
+		}
+
+		private synchronized void request(Subscriber subscriber, long n) {
+			subscriber.requested = Operators.addCap(subscriber.requested, n);
+			drain(subscriber);
+		}
+
+		/**
+		 * Send the queued responses the subscriber requested, then terminate it if the
+		 * stream is over.
+		 */
+		private void drain(Subscriber subscriber) {
+			while (subscriber.requested > 0 && !subscriber.queue.isEmpty()) {
+				subscriber.requested--;
+				subscriber.sink.next(subscriber.queue.poll());
+			}
+			if (subscriber.done && subscriber.queue.isEmpty() && !subscriber.terminated) {
+				subscriber.terminated = true;
+				if (this.error != null) {
+					subscriber.sink.error(this.error);
+				}
+				else {
+					subscriber.sink.complete();
+				}
+			}
+		}
+
+		private void leave(Subscriber subscriber) {
+			Disposable upstream = null;
+			synchronized (this) {
+				if (this.subscribers.remove(subscriber) && this.subscribers.isEmpty() && !this.terminated) {
+					this.terminated = true;
+					upstream = this.upstream;
+					release();
+				}
+			}
+			if (upstream != null) {
+				upstream.dispose();
+			}
+		}
+
+		private synchronized void onNext(ChatResponse response) {
+			if (this.terminated) {
+				return;
+			}
+			record(response);
+			List<Subscriber> lagging = null;
+			for (Subscriber subscriber : this.subscribers) {
+				if (subscriber.requested > 0 && subscriber.queue.isEmpty()) {
+					subscriber.requested--;
+					subscriber.sink.next(response);
+					continue;
+				}
+				subscriber.queue.add(response);
+				if (subscriber.queue.chars() > MoonshotSharedStreams.this.maxReplayChars) {
+					if (lagging == null) {
+						lagging = new ArrayList<>(1);
+					}
+					lagging.add(subscriber);
+				}
+			}
+			if (lagging != null) {
+				for (Subscriber subscriber : lagging) {
+					// Leaves the stream through the disposal of its sink.
+					subscriber.queue.clear();
+					subscriber.terminated = true;
+					subscriber.sink.error(new IllegalStateException(
+							"A subscriber of shared stream '" + this.id + "' fell behind by more than "
+									+ MoonshotSharedStreams.this.maxReplayChars + " characters"));
+				}
+			}
+		}
+
+		private void record(ChatResponse response) {
+			if (this.overflow) {
+				return;
+			}
+			this.replay.add(response);
+			if (this.replay.chars() > MoonshotSharedStreams.this.maxReplayChars) {
+				// Stop recording, the live subscribers are not affected.
+				this.overflow = true;
+				this.replay.clear();
+			}
+		}
+
+		private synchronized void onError(Throwable error) {
+			if (this.terminated) {
+				return;
+			}
+			this.error = error;
+			onTerminate();
+		}
+
+		private synchronized void onComplete() {
+			if (this.terminated) {
+				return;
+			}
+			onTerminate();
+		}
+
+		private void onTerminate() {
+			this.terminated = true;
+			release();
+			List<Subscriber> subscribers = new ArrayList<>(this.subscribers);
+			this.subscribers.clear();
+			for (Subscriber subscriber : subscribers) {
+				subscriber.done = true;
+				drain(subscriber);
+			}
+		}
+
+		private void release() {
+			MoonshotSharedStreams.this.streams.remove(this.id, this);
+		}
+
+	}
+
+	/**
+	 * A subscriber of a shared stream, with the responses it did not request yet.
+	 */
+	private static final class Subscriber {
+
+		private final FluxSink<ChatResponse> sink;
+
+		private final Segments queue;
+
+		private long requested;
+
+		/**
+		 * Whether the stream is over, the subscriber terminates once its queue is empty.
+		 */
+		private boolean done;
+
+		private boolean terminated;
+
+		Subscriber(FluxSink<ChatResponse> sink, Segments queue) {
+			this.sink = sink;
+			this.queue = queue;
+		}
+
+	}
+
+	/**
+	 * Queue of responses where consecutive content deltas are merged, either
+	 * {@link ContentSegment}s or {@link ChatResponse}s kept as is.
+	 */
+	private static final class Segments {
+
+		private final ArrayDeque<Object> segments = new ArrayDeque<>();
+
+		private int chars;
+
+		void add(ChatResponse response) {
+			if (!MoonshotDeltaCoalescer.isContentDelta(response)) {
+				this.segments.add(response);
+				return;
+			}
+			this.chars += response.getResult().getOutput().getText().length();
+			if (this.segments.peekLast() instanceof ContentSegment segment) {
+				segment.append(response);
+			}
+			else {
+				this.segments.add(new ContentSegment(response));
+			}
+		}
+
+		ChatResponse poll() {
+			Object segment = this.segments.poll();
+			if (segment instanceof ContentSegment content) {
+				this.chars -= content.length();
+				return content.toResponse();
+			}
+			return (ChatResponse) segment;
+		}
+
+		boolean isEmpty() {
+			return this.segments.isEmpty();
+		}
+
+		/**
+		 * @return the number of content characters of the queued content segments.
+		 */
+		int chars() {
+			return this.chars;
+		}
+
+		void clear() {
+			this.segments.clear();
+			this.chars = 0;
+		}
+
+		/**
+		 * @return a copy of the queued responses, whose content does not count in its
+		 * {@link #chars()}.
+		 */
+		Segments snapshot() {
+			Segments snapshot = new Segments();
+			for (Object segment : this.segments) {
+				snapshot.segments
+					.add((segment instanceof ContentSegment content) ? content.toResponse() : (ChatResponse) segment);
+			}
+			return snapshot;
+		}
+
+	}
+
+	/**
+	 * Consecutive content deltas, merged into a response built from the last of them.
+	 */
+	private static final class ContentSegment {
+
+		private final StringBuilder content;
+
+		private ChatResponse template;
+
+		private int count = 1;
+
+		ContentSegment(ChatResponse response) {
+			this.content = new StringBuilder(response.getResult().getOutput().getText());
+			this.template = response;
+		}
+
+		void append(ChatResponse response) {
+			this.content.append(response.getResult().getOutput().getText());
+			this.template = response;
+			this.count++;
+		}
+
+		int length() {
+			return this.content.length();
+		}
+
+		ChatResponse toResponse() {
+			return (this.count == 1) ? this.template
+					: MoonshotDeltaCoalescer.withContent(this.template, this.content.toString());
+		}
+
+	}
+
+}
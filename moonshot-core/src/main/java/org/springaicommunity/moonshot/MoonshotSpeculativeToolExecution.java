@@ -0,0 +1,248 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotStreamEvent;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Speculative execution of the tool calls of a single streamed response. Each tool call
+ * is submitted to the executor as soon as its streamed arguments form a complete JSON
+ * object, while the model is still streaming the rest of the response. Once the response
+ * is complete, the speculative results are joined with the execution of the tool calls
+ * that could not be started early.
+ * <p>
+ * A speculative tool call is executed with the assistant message streamed so far, its
+ * content followed by that tool call, so that the tools reading the conversation history
+ * see the assistant turn. Its result is only used if the final tool call has the same ID,
+ * name and arguments, and the final message the same content, otherwise the tool call is
+ * executed again, in a single batch with the tool calls that were not started, with the
+ * final message restricted to them. A tool call completed again with the same ID, name
+ * and arguments, as when a retried or resumed stream replays it, is not started twice.
+ * </p>
+ * <p>
+ * The speculations are cancelled with {@link #cancel()} when the stream terminates. The
+ * tool calls not started yet by the executor are then never executed, while those already
+ * running complete, but their results are dropped.
+ * </p>
+ *
+ * @author agent
+ */
+final class MoonshotSpeculativeToolExecution {
+
+	private final ToolCallingManager toolCallingManager;
+
+	private final Prompt prompt;
+
+	private final Executor executor;
+
+	private final Map<CallKey, Speculation> calls = new ConcurrentHashMap<>();
+
+	/**
+	 * The content streamed so far by each choice.
+	 */
+	private final Map<Integer, StringBuilder> contents = new ConcurrentHashMap<>();
+
+	private volatile boolean cancelled;
+
+	MoonshotSpeculativeToolExecution(ToolCallingManager toolCallingManager, Prompt prompt, Executor executor) {
+		this.toolCallingManager = toolCallingManager;
+		this.prompt = prompt;
+		this.executor = executor;
+	}
+
+	/**
+	 * Start the execution of the tool calls completed by the given stream event.
+	 * @param event the stream event.
+	 */
+	void onEvent(MoonshotStreamEvent event) {
+		if (event instanceof MoonshotStreamEvent.ContentDelta delta) {
+			this.contents.computeIfAbsent(delta.choiceIndex(), index -> new StringBuilder()).append(delta.content());
+			return;
+		}
+		if (!(event instanceof MoonshotStreamEvent.ToolCallCompleted completed)) {
+			return;
+		}
+		AssistantMessage.ToolCall toolCall = toToolCall(completed.toolCall());
+		if (toolCall == null || this.cancelled) {
+			return;
+		}
+		StringBuilder content = this.contents.get(completed.choiceIndex());
+		String text = (content != null) ? content.toString() : "";
+		CallKey key = CallKey.of(toolCall);
+		this.calls.computeIfAbsent(key, k -> new Speculation(text, CompletableFuture
+			.supplyAsync(() -> execute(new AssistantMessage(text, Map.of(), List.of(toolCall))), this.executor)));
+		if (this.cancelled) {
+			// Cancelled concurrently, the cancellation may have missed this call.
+			cancel(this.calls.remove(key));
+		}
+	}
+
+	/**
+	 * Cancel the speculative tool calls whose results were not used, and ignore the tool
+	 * calls completed from now on.
+	 */
+	void cancel() {
+		this.cancelled = true;
+		for (CallKey key : List.copyOf(this.calls.keySet())) {
+			cancel(this.calls.remove(key));
+		}
+	}
+
+	/**
+	 * Execute the tool calls of the given response, reusing the speculative results.
+	 * @param response the complete response requesting the tool calls.
+	 * @return the combined result, equivalent to
+	 * {@link ToolCallingManager#executeToolCalls(Prompt, ChatResponse)}.
+	 */
+	ToolExecutionResult executeToolCalls(ChatResponse response) {
+		AssistantMessage assistantMessage = response.getResults()
+			.stream()
+			.map(Generation::getOutput)
+			.filter(AssistantMessage::hasToolCalls)
+			.findFirst()
+			.orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+
+		String text = (assistantMessage.getText() != null) ? assistantMessage.getText() : "";
+		List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+		List<CompletableFuture<ToolExecutionResult>> speculativeResults = new ArrayList<>(toolCalls.size());
+		List<AssistantMessage.ToolCall> remaining = new ArrayList<>();
+		for (AssistantMessage.ToolCall toolCall : toolCalls) {
+			Speculation speculation = this.calls.remove(CallKey.of(toolCall));
+			if (speculation != null && speculation.text().equals(text)) {
+				speculativeResults.add(speculation.result());
+			}
+			else {
+				cancel(speculation);
+				speculativeResults.add(null);
+				remaining.add(toolCall);
+			}
+		}
+
+		if (remaining.size() == toolCalls.size()) {
+			// No speculative result is used, the response is executed as it is.
+			cancel();
+			return this.toolCallingManager.executeToolCalls(this.prompt, response);
+		}
+		boolean returnDirect = true;
+		Iterator<ToolResponseMessage.ToolResponse> remainingResponses = Collections.emptyIterator();
+		if (!remaining.isEmpty()) {
+			ToolExecutionResult result = execute(new AssistantMessage(assistantMessage.getText(),
+					assistantMessage.getMetadata(), remaining, assistantMessage.getMedia()));
+			returnDirect = result.returnDirect();
+			remainingResponses = toolResponses(result).iterator();
+		}
+		List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+		for (CompletableFuture<ToolExecutionResult> speculative : speculativeResults) {
+			if (speculative != null) {
+				ToolExecutionResult result = join(speculative);
+				returnDirect = returnDirect && result.returnDirect();
+				responses.addAll(toolResponses(result));
+			}
+			else if (remainingResponses.hasNext()) {
+				responses.add(remainingResponses.next());
+			}
+		}
+
+		// The speculations the final response did not request are not needed.
+		cancel();
+
+		List<Message> conversationHistory = new ArrayList<>(this.prompt.getInstructions());
+		conversationHistory.add(assistantMessage);
+		conversationHistory.add(new ToolResponseMessage(responses, Map.of()));
+		return ToolExecutionResult.builder()
+			.conversationHistory(conversationHistory)
+			.returnDirect(returnDirect)
+			.build();
+	}
+
+	private ToolExecutionResult execute(AssistantMessage message) {
+		return this.toolCallingManager.executeToolCalls(this.prompt,
+				new ChatResponse(List.of(new Generation(message))));
+	}
+
+	private static List<ToolResponseMessage.ToolResponse> toolResponses(ToolExecutionResult result) {
+		List<Message> history = result.conversationHistory();
+		if (!history.isEmpty() && history.get(history.size() - 1) instanceof ToolResponseMessage toolResponse) {
+			return toolResponse.getResponses();
+		}
+		return List.of();
+	}
+
+	private static ToolExecutionResult join(CompletableFuture<ToolExecutionResult> result) {
+		try {
+			return result.join();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw ex;
+		}
+	}
+
+	private static void cancel(Speculation speculation) {
+		if (speculation != null) {
+			speculation.result().cancel(false);
+		}
+	}
+
+	private static AssistantMessage.ToolCall toToolCall(ToolCall toolCall) {
+		if (toolCall.id() == null || toolCall.function() == null || toolCall.function().name() == null) {
+			return null;
+		}
+		return new AssistantMessage.ToolCall(toolCall.id(), "function", toolCall.function().name(),
+				toolCall.function().arguments());
+	}
+
+	/**
+	 * A speculative tool call execution and the assistant content it was started with.
+	 */
+	private record Speculation(String text, CompletableFuture<ToolExecutionResult> result) {
+
+	}
+
+	/**
+	 * Identity of a tool call execution, a call is only reused for the same arguments.
+	 */
+	private record CallKey(String id, String name, String arguments) {
+
+		static CallKey of(AssistantMessage.ToolCall toolCall) {
+			return new CallKey(toolCall.id(), toolCall.name(), toolCall.arguments());
+		}
+
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Resumes a chat completion stream that fails mid-generation. The content received so far
+ * is sent back as a partial assistant message, so that the model continues the response
+ * instead of generating it again, and the continuation is spliced into the same stream.
+ * <p>
+ * Only streams of a single choice that have received content, but no tool call nor finish
+ * reason, are resumed. Any other failure is propagated as is.
+ * </p>
+ * <p>
+ * The continuation is only given the part of {@code max_tokens} left: the completion
+ * tokens streamed so far, reported by the usage if any, or counted as one token per
+ * content delta otherwise, are subtracted. Once the budget is used up, the stream is no
+ * longer resumed.
+ * </p>
+ *
+ * @author agent
+ */
+final class MoonshotStreamResumption {
+
+	private static final Logger logger = LoggerFactory.getLogger(MoonshotStreamResumption.class);
+
+	private final ChatCompletionRequest request;
+
+	private final Function<ChatCompletionRequest, Flux<ChatCompletionChunk>> stream;
+
+	private final StringBuilder content = new StringBuilder();
+
+	private boolean resumable = true;
+
+	private int completionTokens;
+
+	private MoonshotStreamResumption(ChatCompletionRequest request,
+			Function<ChatCompletionRequest, Flux<ChatCompletionChunk>> stream) {
+		this.request = request;
+		this.stream = stream;
+	}
+
+	/**
+	 * Stream the given request, resuming it up to the given number of times.
+	 * @param request the chat completion request.
+	 * @param stream the function streaming a request.
+	 * @param maxResumes the maximum number of times the stream is resumed.
+	 * @return the chunks of the response, continuations included.
+	 */
+	static Flux<ChatCompletionChunk> resumable(ChatCompletionRequest request,
+			Function<ChatCompletionRequest, Flux<ChatCompletionChunk>> stream, int maxResumes) {
+		if (maxResumes <= 0 || (request.n() != null && request.n() > 1)) {
+			return stream.apply(request);
+		}
+		return Flux.defer(() -> new MoonshotStreamResumption(request, stream).attempt(request, maxResumes));
+	}
+
+	private Flux<ChatCompletionChunk> attempt(ChatCompletionRequest request, int remainingResumes) {
+		return this.stream.apply(request)
+			.doOnNext(this::record)
+			.onErrorResume(ex -> remainingResumes > 0 && canResume(), ex -> {
+				logger.warn("Chat completion stream interrupted after {} characters, resuming it: {}",
+						this.content.length(), ex.toString());
+				return attempt(continuation(), remainingResumes - 1);
+			});
+	}
+
+	private void record(ChatCompletionChunk chunk) {
+		if (CollectionUtils.isEmpty(chunk.choices())) {
+			return;
+		}
+		for (ChatCompletionChunk.ChunkChoice choice : chunk.choices()) {
+			if (choice.finishReason() != null
+					|| (choice.delta() != null && !CollectionUtils.isEmpty(choice.delta().toolCalls()))) {
+				this.resumable = false;
+			}
+			if (choice.delta() != null && choice.delta().rawContent() instanceof String delta && !delta.isEmpty()) {
+				this.content.append(delta);
+				this.completionTokens++;
+			}
+			if (choice.usage() != null && choice.usage().completionTokens() != null) {
+				this.completionTokens = Math.max(this.completionTokens, choice.usage().completionTokens());
+			}
+		}
+	}
+
+	private boolean canResume() {
+		Integer remainingTokens = remainingTokens();
+		return this.resumable && !this.content.isEmpty() && (remainingTokens == null || remainingTokens > 0);
+	}
+
+	/**
+	 * @return the tokens left to the continuation, 0 if none, null if unbounded.
+	 */
+	private Integer remainingTokens() {
+		Integer maxTokens = this.request.maxTokens();
+		return (maxTokens != null) ? Math.max(maxTokens - this.completionTokens, 0) : null;
+	}
+
+	private ChatCompletionRequest continuation() {
+		List<ChatCompletionMessage> messages = new ArrayList<>(this.request.messages());
+		messages.add(ChatCompletionMessage.partial(this.content.toString()));
+		ChatCompletionRequest r = this.request;
+		return new ChatCompletionRequest(messages, r.model(), remainingTokens(), r.temperature(), r.topP(), r.n(),
+				r.frequencyPenalty(), r.presencePenalty(), r.stop(), r.stream(), r.tools(), r.toolChoice(),
+				r.responseFormat());
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry of the streamed chat completions, applied until the first element of a stream is
+ * emitted: nothing has reached the subscriber yet, so the request can be reissued
+ * transparently. Failed connections, 429 and 5xx responses are retried with an
+ * exponential backoff.
+ * <p>
+ * Retries are bounded by a budget shared by all the streams: each stream deposits a
+ * fraction of a retry, up to a maximum balance, and each retry withdraws one. When
+ * Moonshot is failing most requests, the retries are thus capped to a ratio of the
+ * traffic instead of multiplying it.
+ * </p>
+ *
+ * @author agent
+ */
+public final class MoonshotStreamRetry {
+
+	/**
+	 * The budget balance is kept in thousandths of a retry.
+	 */
+	private static final long UNIT = 1000;
+
+	private final int maxAttempts;
+
+	private final Duration minBackoff;
+
+	private final Duration maxBackoff;
+
+	private final long deposit;
+
+	private final long maxBalance;
+
+	private final AtomicLong balance;
+
+	private MoonshotStreamRetry(Builder builder) {
+		this.maxAttempts = builder.maxAttempts;
+		this.minBackoff = builder.minBackoff;
+		this.maxBackoff = builder.maxBackoff;
+		this.deposit = Math.round(builder.retryRatio * UNIT);
+		this.maxBalance = builder.maxBudget * UNIT;
+		this.balance = new AtomicLong(this.maxBalance);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Apply the retry to the given stream, which is resubscribed for each attempt.
+	 * @param <T> the type of the stream elements.
+	 * @param stream the stream to retry.
+	 * @return the retried stream.
+	 */
+	public <T> Flux<T> apply(Flux<T> stream) {
+		return Flux.defer(() -> {
+			deposit();
+			AtomicBoolean emitted = new AtomicBoolean();
+			AtomicInteger retries = new AtomicInteger();
+			// The filter is evaluated before the attempts are checked: the budget is only
+			// withdrawn when a retry is left, so that the last failure does not consume
+			// it.
+			return stream.doOnNext(element -> emitted.set(true))
+				.retryWhen(Retry.backoff(this.maxAttempts, this.minBackoff)
+					.maxBackoff(this.maxBackoff)
+					.filter(ex -> !emitted.get() && isTransient(ex) && retries.get() < this.maxAttempts && withdraw())
+					.doBeforeRetry(signal -> retries.incrementAndGet())
+					.onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+		});
+	}
+
+	/**
+	 * @return the number of retries currently available in the budget.
+	 */
+	public double getAvailableRetries() {
+		return (double) this.balance.get() / UNIT;
+	}
+
+	private void deposit() {
+		this.balance.accumulateAndGet(this.deposit, (balance, deposit) -> Math.min(balance + deposit, this.maxBalance));
+	}
+
+	private boolean withdraw() {
+		long current;
+		do {
+			current = this.balance.get();
+			if (current < UNIT) {
+				return false;
+			}
+		}
+		while (!this.balance.compareAndSet(current, current - UNIT));
+		return true;
+	}
+
+	static boolean isTransient(Throwable ex) {
+		if (ex instanceof WebClientResponseException response) {
+			return response.getStatusCode().is5xxServerError()
+					|| response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+		}
+		return ex instanceof WebClientRequestException || ex instanceof TransientAiException;
+	}
+
+	public static final class Builder {
+
+		private int maxAttempts = 3;
+
+		private Duration minBackoff = Duration.ofMillis(500);
+
+		private Duration maxBackoff = Duration.ofSeconds(10);
+
+		private double retryRatio = 0.1;
+
+		private int maxBudget = 10;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param maxAttempts the maximum number of retries of a single stream.
+		 * @return this builder.
+		 */
+		public Builder maxAttempts(int maxAttempts) {
+			Assert.isTrue(maxAttempts >= 0, "maxAttempts must not be negative");
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * @param minBackoff the backoff before the first retry, doubled for each retry.
+		 * @return this builder.
+		 */
+		public Builder minBackoff(Duration minBackoff) {
+			Assert.notNull(minBackoff, "minBackoff cannot be null");
+			this.minBackoff = minBackoff;
+			return this;
+		}
+
+		/**
+		 * @param maxBackoff the maximum backoff between two retries.
+		 * @return this builder.
+		 */
+		public Builder maxBackoff(Duration maxBackoff) {
+			Assert.notNull(maxBackoff, "maxBackoff cannot be null");
+			this.maxBackoff = maxBackoff;
+			return this;
+		}
+
+		/**
+		 * @param retryRatio the fraction of a retry each stream adds to the budget.
+		 * @return this builder.
+		 */
+		public Builder retryRatio(double retryRatio) {
+			Assert.isTrue(retryRatio >= 0, "retryRatio must not be negative");
+			this.retryRatio = retryRatio;
+			return this;
+		}
+
+		/**
+		 * @param maxBudget the maximum number of retries the budget accumulates, which is
+		 * also its initial balance.
+		 * @return this builder.
+		 */
+		public Builder maxBudget(int maxBudget) {
+			Assert.isTrue(maxBudget >= 0, "maxBudget must not be negative");
+			this.maxBudget = maxBudget;
+			return this;
+		}
+
+		public MoonshotStreamRetry build() {
+			return new MoonshotStreamRetry(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * Policy rewriting the content of the tool responses sent back to the model, such as
+ * minifying JSON, capping the size of large outputs or eliding the outputs the model
+ * already answered. The policy is applied when the conversation is converted into a
+ * request, so that it cuts the prompt tokens and the request size of every later turn.
+ * <p>
+ * The tool responses of the latest tool turn, the tool response messages ending the
+ * conversation, are the ones the model has not answered yet. In a tool calling loop, the
+ * policy is applied to a tool response when it is first sent, and once more when the next
+ * turn makes it an older one.
+ * </p>
+ *
+ * @author agent
+ */
+@FunctionalInterface
+public interface MoonshotToolResponsePolicy {
+
+	/**
+	 * Rewrite the content of a tool response.
+	 * @param response the tool response.
+	 * @param latest whether the response belongs to the latest tool turn.
+	 * @return the content to send to the model.
+	 */
+	String apply(ToolResponse response, boolean latest);
+
+	/**
+	 * @param next the policy to apply to the content rewritten by this one.
+	 * @return a policy applying this policy and then the given one.
+	 */
+	default MoonshotToolResponsePolicy andThen(MoonshotToolResponsePolicy next) {
+		Assert.notNull(next, "next cannot be null");
+		return (response, latest) -> next
+			.apply(new ToolResponse(response.id(), response.name(), apply(response, latest)), latest);
+	}
+
+	/**
+	 * @return a policy writing the JSON tool responses without whitespace, the other
+	 * responses are sent as is.
+	 */
+	static MoonshotToolResponsePolicy minifyJson() {
+		JsonFactory jsonFactory = ModelOptionsUtils.OBJECT_MAPPER.getFactory();
+		return (response, latest) -> {
+			String content = response.responseData();
+			if (!looksLikeJson(content)) {
+				return content;
+			}
+			StringWriter minified = new StringWriter(content.length());
+			try (JsonParser parser = jsonFactory.createParser(content);
+					JsonGenerator generator = jsonFactory.createGenerator(minified)) {
+				int depth = 0;
+				do {
+					JsonToken token = parser.nextToken();
+					if (token == null) {
+						return content;
+					}
+					if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+						// Keep the numbers as written, without a round trip through
+						// double.
+						generator.writeNumber(parser.getText());
+					}
+					else {
+						generator.copyCurrentEvent(parser);
+					}
+					depth += (token.isStructStart() ? 1 : token.isStructEnd() ? -1 : 0);
+				}
+				while (depth > 0);
+				if (parser.nextToken() != null) {
+					return content;
+				}
+			}
+			catch (IOException ex) {
+				// Not a JSON document after all.
+				return content;
+			}
+			return minified.toString();
+		};
+	}
+
+	/**
+	 * @param maxLength the maximum number of characters of a tool response.
+	 * @return a policy cutting the tool responses longer than the given length, followed
+	 * by a note telling how many characters were cut.
+	 */
+	static MoonshotToolResponsePolicy truncate(int maxLength) {
+		Assert.isTrue(maxLength > 0, "maxLength must be positive");
+		return (response, latest) -> {
+			String content = response.responseData();
+			if (content == null || content.length() <= maxLength) {
+				return content;
+			}
+			int end = Character.isHighSurrogate(content.charAt(maxLength - 1)) ? maxLength - 1 : maxLength;
+			return content.substring(0, end) + "... [" + (content.length() - end) + " characters truncated]";
+		};
+	}
+
+	/**
+	 * @param placeholder the content sent in place of the older tool responses.
+	 * @return a policy sending the tool responses of the latest tool turn as is and the
+	 * given placeholder in place of the older ones.
+	 */
+	static MoonshotToolResponsePolicy elideOlder(String placeholder) {
+		Assert.notNull(placeholder, "placeholder cannot be null");
+		return (response, latest) -> latest ? response.responseData() : placeholder;
+	}
+
+	/**
+	 * @param policies the policies of the tools, by tool name.
+	 * @param defaultPolicy the policy of the other tools, or null to send their responses
+	 * as is.
+	 * @return a policy delegating to the policy of the tool of each response.
+	 */
+	static MoonshotToolResponsePolicy perTool(Map<String, MoonshotToolResponsePolicy> policies,
+			MoonshotToolResponsePolicy defaultPolicy) {
+		Assert.notNull(policies, "policies cannot be null");
+		Map<String, MoonshotToolResponsePolicy> toolPolicies = Map.copyOf(policies);
+		return (response, latest) -> {
+			MoonshotToolResponsePolicy policy = (response.name() != null) ? toolPolicies.get(response.name()) : null;
+			if (policy == null) {
+				policy = defaultPolicy;
+			}
+			return (policy != null) ? policy.apply(response, latest) : response.responseData();
+		};
+	}
+
+	private static boolean looksLikeJson(String content) {
+		if (content == null) {
+			return false;
+		}
+		for (int i = 0; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				return c == '{' || c == '[';
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of the tool selections of a {@link MoonshotToolSelector}. The selections only
+ * count the requests offering more tools than the maximum, the other requests keep all
+ * their tools.
+ *
+ * @author agent
+ */
+public final class MoonshotToolSelectionMetrics {
+
+	private final LongAdder selections = new LongAdder();
+
+	private final LongAdder selectionNanos = new LongAdder();
+
+	private final LongAdder offeredTools = new LongAdder();
+
+	private final LongAdder selectedTools = new LongAdder();
+
+	private final LongAdder estimatedTokensSaved = new LongAdder();
+
+	/**
+	 * @return the number of selections made.
+	 */
+	public long getSelections() {
+		return this.selections.sum();
+	}
+
+	/**
+	 * @return the total time spent selecting tools, in nanoseconds, including the
+	 * indexing of new sets of tools.
+	 */
+	public long getSelectionNanos() {
+		return this.selectionNanos.sum();
+	}
+
+	/**
+	 * @return the number of tools offered to the selections.
+	 */
+	public long getOfferedTools() {
+		return this.offeredTools.sum();
+	}
+
+	/**
+	 * @return the number of tools kept by the selections.
+	 */
+	public long getSelectedTools() {
+		return this.selectedTools.sum();
+	}
+
+	/**
+	 * @return the estimated number of prompt tokens of the tool definitions left out,
+	 * counting four characters of name, description and schema per token.
+	 */
+	public long getEstimatedTokensSaved() {
+		return this.estimatedTokensSaved.sum();
+	}
+
+	void record(long nanos, int offered, int selected, long tokensSaved) {
+		this.selections.increment();
+		this.selectionNanos.add(nanos);
+		this.offeredTools.add(offered);
+		this.selectedTools.add(selected);
+		this.estimatedTokensSaved.add(tokensSaved);
+	}
+
+	@Override
+	public String toString() {
+		return "MoonshotToolSelectionMetrics{selections=" + getSelections() + ", selectionNanos=" + getSelectionNanos()
+				+ ", offeredTools=" + getOfferedTools() + ", selectedTools=" + getSelectedTools()
+				+ ", estimatedTokensSaved=" + getEstimatedTokensSaved() + "}";
+	}
+
+}
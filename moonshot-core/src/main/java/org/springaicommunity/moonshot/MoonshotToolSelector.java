@@ -0,0 +1,316 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selects the tools relevant to a conversation, so that a request does not carry the
+ * definitions of every registered tool. The tools are ranked with BM25 over their names
+ * and descriptions, against the text of the last user message, and the best ranked ones
+ * are kept, up to the maximum number of tools.
+ * <p>
+ * The tools already called in the conversation and the tools always included are kept
+ * whatever their rank. The selected tools keep their registration order, so that the
+ * requests of a conversation share the same prefix. The index of a set of tools is built
+ * once and kept for the next requests.
+ * </p>
+ *
+ * @author agent
+ */
+public class MoonshotToolSelector {
+
+	private static final int MAX_CACHED_INDEXES = 64;
+
+	/**
+	 * The terms of a tool name count as many times in its document, as a name is more
+	 * telling than a description.
+	 */
+	private static final int NAME_BOOST = 2;
+
+	private static final double K1 = 1.2;
+
+	private static final double B = 0.75;
+
+	/**
+	 * Characters per token of the estimated size of the tool definitions.
+	 */
+	private static final int CHARS_PER_TOKEN = 4;
+
+	private final int maxTools;
+
+	private final Set<String> alwaysIncluded;
+
+	private final MoonshotToolSelectionMetrics metrics = new MoonshotToolSelectionMetrics();
+
+	private final Map<List<ToolDefinition>, Index> indexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a tool selector.
+	 * @param maxTools the maximum number of tools of a request.
+	 */
+	public MoonshotToolSelector(int maxTools) {
+		this(maxTools, Set.of());
+	}
+
+	/**
+	 * Create a tool selector.
+	 * @param maxTools the maximum number of tools of a request, not counting the tools
+	 * already called in the conversation.
+	 * @param alwaysIncluded the names of the tools kept in every request.
+	 */
+	public MoonshotToolSelector(int maxTools, Set<String> alwaysIncluded) {
+		Assert.isTrue(maxTools > 0, "maxTools must be positive");
+		Assert.notNull(alwaysIncluded, "alwaysIncluded cannot be null");
+		this.maxTools = maxTools;
+		this.alwaysIncluded = Set.copyOf(alwaysIncluded);
+	}
+
+	/**
+	 * Select the tools relevant to the given conversation.
+	 * @param toolDefinitions the definitions of the available tools.
+	 * @param instructions the instructions of the conversation.
+	 * @return the selected tool definitions, in the order of the given ones.
+	 */
+	public List<ToolDefinition> select(List<ToolDefinition> toolDefinitions, List<Message> instructions) {
+		Assert.notNull(toolDefinitions, "toolDefinitions cannot be null");
+		Assert.notNull(instructions, "instructions cannot be null");
+		if (toolDefinitions.size() <= this.maxTools) {
+			return toolDefinitions;
+		}
+		String query = lastUserText(instructions);
+		if (query == null) {
+			return toolDefinitions;
+		}
+		long start = System.nanoTime();
+		Index index = index(toolDefinitions);
+		double[] scores = index.score(tokenize(query));
+
+		Set<String> required = new HashSet<>(this.alwaysIncluded);
+		addCalledTools(instructions, required);
+		boolean[] selected = new boolean[toolDefinitions.size()];
+		int count = 0;
+		for (int i = 0; i < selected.length; i++) {
+			if (required.contains(toolDefinitions.get(i).name())) {
+				selected[i] = true;
+				count++;
+			}
+		}
+		// The best ranked tools are kept in a heap headed by the worst of them. Ties are
+		// broken by registration order: a later tool does not replace an equal one.
+		Comparator<Integer> rank = (a, b) -> (scores[a] != scores[b]) ? Double.compare(scores[a], scores[b])
+				: Integer.compare(b, a);
+		PriorityQueue<Integer> best = new PriorityQueue<>(this.maxTools + 1, rank);
+		for (int i = 0; i < selected.length; i++) {
+			if (selected[i]) {
+				continue;
+			}
+			if (best.size() < this.maxTools) {
+				best.add(i);
+			}
+			else if (rank.compare(i, best.peek()) > 0) {
+				best.poll();
+				best.add(i);
+			}
+		}
+		for (int i : best) {
+			selected[i] = true;
+			count++;
+		}
+
+		List<ToolDefinition> selection = new ArrayList<>(count);
+		long tokensSaved = 0;
+		for (int i = 0; i < selected.length; i++) {
+			if (selected[i]) {
+				selection.add(toolDefinitions.get(i));
+			}
+			else {
+				tokensSaved += index.tokens[i];
+			}
+		}
+		this.metrics.record(System.nanoTime() - start, toolDefinitions.size(), selection.size(), tokensSaved);
+		return selection;
+	}
+
+	/**
+	 * @return the metrics of the selections made.
+	 */
+	public MoonshotToolSelectionMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	private Index index(List<ToolDefinition> toolDefinitions) {
+		Index index = this.indexes.get(toolDefinitions);
+		if (index == null) {
+			index = new Index(toolDefinitions);
+			if (this.indexes.size() >= MAX_CACHED_INDEXES) {
+				// Tool sets built on the fly must not grow the cache without bound.
+				this.indexes.clear();
+			}
+			this.indexes.put(List.copyOf(toolDefinitions), index);
+		}
+		return index;
+	}
+
+	private static String lastUserText(List<Message> instructions) {
+		for (int i = instructions.size() - 1; i >= 0; i--) {
+			Message message = instructions.get(i);
+			if (message.getMessageType() == MessageType.USER && StringUtils.hasText(message.getText())) {
+				return message.getText();
+			}
+		}
+		return null;
+	}
+
+	private static void addCalledTools(List<Message> instructions, Set<String> names) {
+		for (Message message : instructions) {
+			if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+				for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+					names.add(toolCall.name());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Split the given text into lower case terms: runs of letters and digits, also split
+	 * at the case changes of camel case names, and single ideographs, as the Chinese text
+	 * is not separated into words.
+	 */
+	static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+		if (text == null) {
+			return terms;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			int c = (i < text.length()) ? text.charAt(i) : ' ';
+			boolean ideograph = Character.isIdeographic(c);
+			boolean wordChar = !ideograph && Character.isLetterOrDigit(c);
+			boolean camelBoundary = wordChar && start >= 0 && Character.isUpperCase(c)
+					&& Character.isLowerCase(text.charAt(i - 1));
+			if (start >= 0 && (!wordChar || camelBoundary)) {
+				if (i - start > 1) {
+					terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				}
+				start = -1;
+			}
+			if (ideograph) {
+				terms.add(String.valueOf((char) c));
+			}
+			else if (wordChar && start < 0) {
+				start = i;
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * BM25 index of the names and descriptions of a set of tools.
+	 */
+	private static final class Index {
+
+		/**
+		 * The postings of each term, pairs of document and term frequency.
+		 */
+		private final Map<String, int[]> postings = new HashMap<>();
+
+		private final int[] lengths;
+
+		private final double averageLength;
+
+		/**
+		 * The estimated number of tokens of each tool definition.
+		 */
+		private final long[] tokens;
+
+		Index(List<ToolDefinition> toolDefinitions) {
+			int size = toolDefinitions.size();
+			this.lengths = new int[size];
+			this.tokens = new long[size];
+			Map<String, List<Integer>> postings = new HashMap<>();
+			long totalLength = 0;
+			for (int doc = 0; doc < size; doc++) {
+				ToolDefinition toolDefinition = toolDefinitions.get(doc);
+				List<String> terms = new ArrayList<>();
+				List<String> nameTerms = tokenize(toolDefinition.name());
+				for (int i = 0; i < NAME_BOOST; i++) {
+					terms.addAll(nameTerms);
+				}
+				terms.addAll(tokenize(toolDefinition.description()));
+				Map<String, Integer> frequencies = new HashMap<>();
+				for (String term : terms) {
+					frequencies.merge(term, 1, Integer::sum);
+				}
+				for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+					List<Integer> posting = postings.computeIfAbsent(frequency.getKey(), key -> new ArrayList<>());
+					posting.add(doc);
+					posting.add(frequency.getValue());
+				}
+				this.lengths[doc] = terms.size();
+				totalLength += terms.size();
+				this.tokens[doc] = (length(toolDefinition.name()) + length(toolDefinition.description())
+						+ length(toolDefinition.inputSchema()) + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+			}
+			this.averageLength = (size > 0) ? Math.max(1.0, (double) totalLength / size) : 1.0;
+			postings.forEach(
+					(term, posting) -> this.postings.put(term, posting.stream().mapToInt(Integer::intValue).toArray()));
+		}
+
+		double[] score(List<String> query) {
+			double[] scores = new double[this.lengths.length];
+			for (String term : new LinkedHashSet<>(query)) {
+				int[] posting = this.postings.get(term);
+				if (posting == null) {
+					continue;
+				}
+				int documents = posting.length / 2;
+				double idf = Math.log(1 + (this.lengths.length - documents + 0.5) / (documents + 0.5));
+				for (int i = 0; i < posting.length; i += 2) {
+					int doc = posting[i];
+					int frequency = posting[i + 1];
+					double norm = K1 * (1 - B + B * this.lengths[doc] / this.averageLength);
+					scores[doc] += idf * frequency * (K1 + 1) / (frequency + norm);
+				}
+			}
+			return scores;
+		}
+
+		private static int length(String text) {
+			return (text != null) ? text.length() : 0;
+		}
+
+	}
+
+}
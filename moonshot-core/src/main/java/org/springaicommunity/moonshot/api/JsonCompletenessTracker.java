@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+/**
+ * Tracks whether a JSON document streamed in fragments forms a complete value. Only
+ * objects and arrays are tracked, since a scalar cannot be told apart from a prefix of a
+ * longer one. The fragments are scanned once, keeping only the nesting depth and the
+ * string state, so the check costs constant time per character.
+ *
+ * @author agent
+ */
+final class JsonCompletenessTracker {
+
+	private int depth;
+
+	private boolean started;
+
+	private boolean inString;
+
+	private boolean escaped;
+
+	private boolean complete;
+
+	private boolean unsupported;
+
+	/**
+	 * Scan the next fragment of the document.
+	 * @param fragment the next fragment.
+	 * @return true if the document is a complete object or array.
+	 */
+	boolean append(CharSequence fragment) {
+		if (this.complete || this.unsupported) {
+			return this.complete;
+		}
+		for (int i = 0; i < fragment.length(); i++) {
+			char c = fragment.charAt(i);
+			if (!this.started) {
+				if (Character.isWhitespace(c)) {
+					continue;
+				}
+				if (c != '{' && c != '[') {
+					this.unsupported = true;
+					return false;
+				}
+				this.started = true;
+			}
+			if (this.inString) {
+				if (this.escaped) {
+					this.escaped = false;
+				}
+				else if (c == '\\') {
+					this.escaped = true;
+				}
+				else if (c == '"') {
+					this.inString = false;
+				}
+				continue;
+			}
+			switch (c) {
+				case '"' -> this.inString = true;
+				case '{', '[' -> this.depth++;
+				case '}', ']' -> {
+					if (--this.depth == 0) {
+						this.complete = true;
+						return true;
+					}
+				}
+				default -> {
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the document is a complete object or array.
+	 */
+	boolean isComplete() {
+		return this.complete;
+	}
+
+}
@@ -16,14 +16,26 @@
 
 package org.springaicommunity.moonshot.api;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.springframework.ai.model.ApiKey;
 import org.springframework.ai.model.ChatModelDescription;
 import org.springframework.ai.model.ModelOptionsUtils;
 import org.springframework.ai.model.SimpleApiKey;
 import org.springframework.ai.retry.RetryUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -34,13 +46,24 @@ import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.springaicommunity.moonshot.api.MoonshotConstants.DEFAULT_BASE_URL;
 import static org.springaicommunity.moonshot.api.MoonshotConstants.DEFAULT_COMPLETIONS_PATH;
@@ -59,16 +82,26 @@ public class MoonshotApi {
 
 	public static final String DEFAULT_CHAT_MODEL = ChatModel.MOONSHOT_V1_8K.getValue();
 
-	private static final Predicate<String> SSE_DONE_PREDICATE = "[DONE]"::equals;
-
 	private final String completionsPath;
 
 	private final RestClient restClient;
 
 	private final WebClient webClient;
 
+	private final ResponseErrorHandler responseErrorHandler;
+
 	private final MoonshotStreamFunctionCallingHelper chunkMerger = new MoonshotStreamFunctionCallingHelper();
 
+	private final MoonshotTransportMetrics transportMetrics = new MoonshotTransportMetrics();
+
+	private boolean canonicalRequests;
+
+	private MoonshotCompression compression;
+
+	private MoonshotRequestEncoder requestEncoder = new MoonshotRequestEncoder(false, null);
+
+	private MoonshotStreamWatchdog streamWatchdog;
+
 	/**
 	 * Create a new chat completion api.
 	 * @param baseUrl api base URL.
@@ -87,6 +120,7 @@ public class MoonshotApi {
 		Assert.notNull(headers, "Headers must not be null");
 
 		this.completionsPath = completionsPath;
+		this.responseErrorHandler = responseErrorHandler;
 		// @formatter:off
 		Consumer<HttpHeaders> finalHeaders = h -> {
 			h.setBearerAuth(apiKey.getValue());
@@ -96,14 +130,67 @@ public class MoonshotApi {
 		this.restClient = restClientBuilder.baseUrl(baseUrl)
 				.defaultHeaders(finalHeaders)
 				.defaultStatusHandler(responseErrorHandler)
+				.requestInterceptor(MoonshotResponseDecompression.interceptor(this.transportMetrics))
 				.build();
 
 		this.webClient = webClientBuilder
 				.baseUrl(baseUrl)
 				.defaultHeaders(finalHeaders)
+				.filter(MoonshotResponseDecompression.filter(this.transportMetrics))
 				.build(); // @formatter:on
 	}
 
+	/**
+	 * Set the stall detection applied to the reactive chat completion streams.
+	 * @param streamWatchdog the stall detection settings, or null to wait indefinitely
+	 * for each chunk.
+	 */
+	public void setStreamWatchdog(MoonshotStreamWatchdog streamWatchdog) {
+		this.streamWatchdog = streamWatchdog;
+	}
+
+	/**
+	 * Set whether the requests are serialized canonically: tools ordered by name, object
+	 * keys sorted and no whitespace, so that requests sharing a prefix are byte-identical
+	 * up to their first difference and hit the server's prompt cache.
+	 * @param canonicalRequests true to serialize the requests canonically.
+	 */
+	public void setCanonicalRequests(boolean canonicalRequests) {
+		this.canonicalRequests = canonicalRequests;
+		this.requestEncoder = new MoonshotRequestEncoder(canonicalRequests, this.compression);
+	}
+
+	/**
+	 * @return whether the requests are serialized canonically.
+	 */
+	public boolean isCanonicalRequests() {
+		return this.canonicalRequests;
+	}
+
+	/**
+	 * Set the compression of the request bodies. The compressed responses are
+	 * decompressed whether or not the requests are compressed.
+	 * @param compression the compression settings, or null to send the requests
+	 * uncompressed and not to ask for compressed responses.
+	 */
+	public void setCompression(MoonshotCompression compression) {
+		this.compression = compression;
+		this.requestEncoder = new MoonshotRequestEncoder(this.canonicalRequests, compression);
+	}
+
+	/**
+	 * @return the byte counts of the exchanges, before and after compression.
+	 */
+	public MoonshotTransportMetrics getTransportMetrics() {
+		return this.transportMetrics;
+	}
+
+	private MoonshotRequestEncoder.Body requestBody(ChatCompletionRequest chatRequest) {
+		MoonshotRequestEncoder.Body body = this.requestEncoder.encode(chatRequest);
+		this.transportMetrics.recordRequest(body.contentLength(), body.content().length);
+		return body;
+	}
+
 	/**
 	 * Creates a model response for the given chat conversation.
 	 * @param chatRequest The chat completion request.
@@ -115,7 +202,13 @@ public class MoonshotApi {
 		Assert.notNull(chatRequest, "The request body can not be null.");
 		Assert.isTrue(!chatRequest.stream(), "Request must set the stream property to false.");
 
-		return this.restClient.post().uri(completionsPath).body(chatRequest).retrieve().toEntity(ChatCompletion.class);
+		MoonshotRequestEncoder.Body body = requestBody(chatRequest);
+		return this.restClient.post()
+			.uri(completionsPath)
+			.headers(body::writeHeaders)
+			.body(body.content())
+			.retrieve()
+			.toEntity(ChatCompletion.class);
 	}
 
 	/**
@@ -127,46 +220,204 @@ public class MoonshotApi {
 	public Flux<ChatCompletionChunk> chatCompletionStream(ChatCompletionRequest chatRequest) {
 		Assert.notNull(chatRequest, "The request body can not be null.");
 		Assert.isTrue(chatRequest.stream(), "Request must set the steam property to true.");
-		AtomicBoolean isInsideTool = new AtomicBoolean(false);
 
-		return this.webClient.post()
+		// Merge all chunks belonging to the same function call into a single chunk.
+		return this.chunkMerger.mergeToolCallWindows(chunkStream(chatRequest));
+	}
+
+	/**
+	 * Creates a streaming chat response for the given chat conversation, demultiplexed
+	 * per choice. With {@code n > 1}, each candidate is generated in parallel by the same
+	 * request and comes out as its own ordered sub-stream, keyed by the choice index,
+	 * with its tool call windows merged. Every sub-stream must be consumed for the
+	 * response to make progress.
+	 * @param chatRequest The chat completion request. Must have the stream property set
+	 * to true.
+	 * @return Returns a {@link Flux} of per-choice sub-streams of chat completion chunks.
+	 */
+	public Flux<GroupedFlux<Integer, ChatCompletionChunk>> chatCompletionChoiceStreams(
+			ChatCompletionRequest chatRequest) {
+		return this.chunkMerger.groupByChoice(chatCompletionStream(chatRequest));
+	}
+
+	/**
+	 * Creates a streaming chat response for the given chat conversation, read with the
+	 * calling thread through the {@link RestClient} instead of the reactive
+	 * {@link WebClient}. Tool call windows are merged as by
+	 * {@link #chatCompletionStream(ChatCompletionRequest)}. The returned stream holds the
+	 * HTTP response open: it must be closed, typically with a try-with-resources block,
+	 * which aborts the exchange if the stream is not exhausted.
+	 * @param chatRequest The chat completion request. Must have the stream property set
+	 * to true.
+	 * @return Returns a sequential {@link Stream} of chat completion chunks.
+	 */
+	public Stream<ChatCompletionChunk> chatCompletionBlockingStream(ChatCompletionRequest chatRequest) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		Assert.isTrue(chatRequest.stream(), "Request must set the steam property to true.");
+
+		MoonshotRequestEncoder.Body body = requestBody(chatRequest);
+		MoonshotChunkIterator chunks = this.restClient.post()
 			.uri(completionsPath)
-			.body(Mono.just(chatRequest), ChatCompletionRequest.class)
-			.retrieve()
-			.bodyToFlux(String.class)
-			// cancels the flux stream after the "[DONE]" is received.
-			.takeUntil(SSE_DONE_PREDICATE)
-			// filters out the "[DONE]" message.
-			.filter(SSE_DONE_PREDICATE.negate())
-			.map(content -> ModelOptionsUtils.jsonToObject(content, ChatCompletionChunk.class))
-			// Detect is the chunk is part of a streaming function call.
-			.map(chunk -> {
-				if (this.chunkMerger.isStreamingToolFunctionCall(chunk)) {
-					isInsideTool.set(true);
+			.headers(body::writeHeaders)
+			.body(body.content())
+			.exchange((request, response) -> {
+				try {
+					if (this.responseErrorHandler.hasError(response)) {
+						this.responseErrorHandler.handleError(request.getURI(), request.getMethod(), response);
+					}
+					return new MoonshotChunkIterator(response.getBody(), response, this.chunkMerger);
+				}
+				catch (IOException | RuntimeException ex) {
+					response.close();
+					throw ex;
+				}
+			}, false);
+		return StreamSupport
+			.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED | Spliterator.NONNULL), false)
+			.onClose(chunks::close);
+	}
+
+	/**
+	 * Creates a streaming chat response for the given chat conversation, notifying the
+	 * given listener of the fine-grained events of the raw stream. The listener sees each
+	 * tool call complete as soon as its arguments are, before the merged tool call chunk
+	 * is emitted.
+	 * @param chatRequest The chat completion request. Must have the stream property set
+	 * to true.
+	 * @param eventListener The listener notified of each {@link MoonshotStreamEvent}.
+	 * @return Returns a {@link Flux} stream from chat completion chunks.
+	 */
+	public Flux<ChatCompletionChunk> chatCompletionStream(ChatCompletionRequest chatRequest,
+			Consumer<MoonshotStreamEvent> eventListener) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		Assert.isTrue(chatRequest.stream(), "Request must set the steam property to true.");
+		Assert.notNull(eventListener, "The event listener can not be null.");
+
+		Flux<ChatCompletionChunk> chunks = this.chunkMerger.observeStreamEvents(chunkStream(chatRequest),
+				eventListener);
+		return this.chunkMerger.mergeToolCallWindows(chunks);
+	}
+
+	/**
+	 * Creates a streaming chat response for the given chat conversation, as a stream of
+	 * fine-grained events. Content deltas are emitted as they arrive, even while tool
+	 * calls are being streamed, and each tool call is reported when it starts, for each
+	 * arguments delta and once it is complete.
+	 * @param chatRequest The chat completion request. Must have the stream property set
+	 * to true.
+	 * @return Returns a {@link Flux} stream of {@link MoonshotStreamEvent}s.
+	 */
+	public Flux<MoonshotStreamEvent> chatCompletionEvents(ChatCompletionRequest chatRequest) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		Assert.isTrue(chatRequest.stream(), "Request must set the steam property to true.");
+
+		return this.chunkMerger.toStreamEvents(chunkStream(chatRequest));
+	}
+
+	/**
+	 * Streams the content of the response to the given chat conversation straight into
+	 * the given sink, without materializing the merged chunks. Tool call deltas are
+	 * ignored. The sink is written on a bounded elastic thread since most sinks block, it
+	 * is flushed according to the given policy and completed when the stream completes.
+	 * @param chatRequest The chat completion request. Must have the stream property set
+	 * to true.
+	 * @param sink The sink receiving the content deltas.
+	 * @param flushPolicy The policy deciding when the sink is flushed.
+	 * @return Returns a {@link Mono} completing once all the content is written and
+	 * flushed.
+	 */
+	public Mono<Void> streamContent(ChatCompletionRequest chatRequest, MoonshotContentSink sink,
+			MoonshotFlushPolicy flushPolicy) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		Assert.isTrue(chatRequest.stream(), "Request must set the steam property to true.");
+		Assert.notNull(sink, "The content sink can not be null.");
+		Assert.notNull(flushPolicy, "The flush policy can not be null.");
+
+		return Flux.defer(() -> {
+			long[] pendingChars = new long[1];
+			return chunkStream(chatRequest).publishOn(Schedulers.boundedElastic()).doOnNext(chunk -> {
+				if (chunk.choices() == null) {
+					return;
+				}
+				for (ChatCompletionChunk.ChunkChoice choice : chunk.choices()) {
+					String delta = (choice.delta() != null ? choice.delta().content() : null);
+					if (delta == null || delta.isEmpty()) {
+						continue;
+					}
+					try {
+						sink.write(delta);
+						pendingChars[0] += delta.length();
+						if (flushPolicy.shouldFlush(delta, pendingChars[0])) {
+							sink.flush();
+							pendingChars[0] = 0;
+						}
+					}
+					catch (IOException ex) {
+						throw new UncheckedIOException("Failed to write the streamed content", ex);
+					}
 				}
-				return chunk;
-			})
-			// Group all chunks belonging to the same function call.
-			// Flux<ChatCompletionChunk> -> Flux<Flux<ChatCompletionChunk>>
-			.windowUntil(chunk -> {
-				if (isInsideTool.get() && this.chunkMerger.isStreamingToolFunctionCallFinish(chunk)) {
-					isInsideTool.set(false);
-					return true;
+			}).then(Mono.fromRunnable(() -> {
+				try {
+					sink.complete();
 				}
-				return !isInsideTool.get();
-			})
-			// Merging the window chunks into a single chunk.
-			// Reduce the inner Flux<ChatCompletionChunk> window into a single
-			// Mono<ChatCompletionChunk>,
-			// Flux<Flux<ChatCompletionChunk>> -> Flux<Mono<ChatCompletionChunk>>
-			.concatMapIterable(window -> {
-				Mono<ChatCompletionChunk> monoChunk = window.reduce(
-						new ChatCompletionChunk(null, null, null, null, null),
-						(previous, current) -> this.chunkMerger.merge(previous, current));
-				return List.of(monoChunk);
-			})
-			// Flux<Mono<ChatCompletionChunk>> -> Flux<ChatCompletionChunk>
-			.flatMap(mono -> mono);
+				catch (IOException ex) {
+					throw new UncheckedIOException("Failed to flush the streamed content", ex);
+				}
+			}));
+		}).then();
+	}
+
+	private Flux<ChatCompletionChunk> chunkStream(ChatCompletionRequest chatRequest) {
+		MoonshotStreamWatchdog watchdog = this.streamWatchdog;
+		Flux<List<ChatCompletionChunk>> events = Flux.defer(() -> {
+			MoonshotSseDecoder sseDecoder = new MoonshotSseDecoder();
+			MoonshotRequestEncoder.Body body = requestBody(chatRequest);
+			Flux<List<ChatCompletionChunk>> chunks = this.webClient.post()
+				.uri(completionsPath)
+				.headers(body::writeHeaders)
+				.bodyValue(body.content())
+				.retrieve()
+				.bodyToFlux(DataBuffer.class)
+				// Frame the SSE events on the raw bytes, releasing each buffer.
+				.map(sseDecoder::decode)
+				// cancels the flux stream after the "[DONE]" is received.
+				.takeUntil(decoded -> sseDecoder.isDone())
+				.concatWith(Mono.fromSupplier(sseDecoder::complete))
+				.doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+			return (watchdog != null) ? watch(chunks, watchdog) : chunks;
+		});
+		if (watchdog != null && watchdog.maxRetries() > 0) {
+			// Nothing was emitted before the first chunk, the request can be reissued.
+			events = events.retryWhen(Retry.max(watchdog.maxRetries())
+				.filter(ex -> ex instanceof MoonshotStreamStallException stall && stall.isFirstChunk())
+				.onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+		}
+		// One chunk per choice, so that n > 1 candidates are merged separately.
+		return events.flatMapIterable(this.chunkMerger::splitChoices);
+	}
+
+	/**
+	 * Fail the given stream with a {@link MoonshotStreamStallException} if its chunks do
+	 * not arrive in time, cancelling the HTTP exchange.
+	 */
+	private static Flux<List<ChatCompletionChunk>> watch(Flux<List<ChatCompletionChunk>> chunks,
+			MoonshotStreamWatchdog watchdog) {
+		Duration firstChunkTimeout = watchdog.firstChunkTimeout();
+		Duration idleTimeout = watchdog.idleTimeout();
+		if (firstChunkTimeout == null && idleTimeout == null) {
+			return chunks;
+		}
+		AtomicBoolean received = new AtomicBoolean();
+		Mono<Long> firstChunk = (firstChunkTimeout != null) ? Mono.delay(firstChunkTimeout) : Mono.never();
+		Mono<Long> nextChunk = (idleTimeout != null) ? Mono.delay(idleTimeout) : Mono.never();
+		return chunks
+			// Buffers holding no complete event do not count as progress.
+			.filter(decoded -> !decoded.isEmpty())
+			.timeout(firstChunk, decoded -> nextChunk)
+			.doOnNext(decoded -> received.set(true))
+			.onErrorMap(TimeoutException.class,
+					ex -> received.get() ? new MoonshotStreamStallException(false, idleTimeout)
+							: new MoonshotStreamStallException(true, firstChunkTimeout));
 	}
 
 	/**
@@ -244,14 +495,27 @@ public class MoonshotApi {
 	 * completion).
 	 * @param completionTokens Number of tokens in the generated completion. Only
 	 * applicable for completion requests.
+	 * @param cachedTokens Number of prompt tokens read from the server's prompt cache.
 	 */
 	@JsonInclude(Include.NON_NULL)
 	public record Usage(
 	// @formatter:off
 		@JsonProperty("prompt_tokens") Integer promptTokens,
 		@JsonProperty("total_tokens") Integer totalTokens,
-		@JsonProperty("completion_tokens") Integer completionTokens) {
+		@JsonProperty("completion_tokens") Integer completionTokens,
+		@JsonProperty("cached_tokens") Integer cachedTokens) {
 		// @formatter:on
+
+		/**
+		 * Usage statistics without the cached token count.
+		 * @param promptTokens Number of tokens in the prompt.
+		 * @param totalTokens Total number of tokens used in the request.
+		 * @param completionTokens Number of tokens in the generated completion.
+		 */
+		public Usage(Integer promptTokens, Integer totalTokens, Integer completionTokens) {
+			this(promptTokens, totalTokens, completionTokens, null);
+		}
+
 	}
 
 	/**
@@ -286,6 +550,8 @@ public class MoonshotApi {
 	 * @param tools A list of tools the model may call. Currently, only functions are
 	 * supported as a tool.
 	 * @param toolChoice Controls which (if any) function is called by the model.
+	 * @param responseFormat The format of the generated message, set to
+	 * {@link ResponseFormat.Type#JSON_OBJECT} to generate a valid JSON object.
 	 */
 	@JsonInclude(Include.NON_NULL)
 	public record ChatCompletionRequest(
@@ -301,9 +567,20 @@ public class MoonshotApi {
 			@JsonProperty("stop") List<String> stop,
 			@JsonProperty("stream") Boolean stream,
 			@JsonProperty("tools") List<FunctionTool> tools,
-			@JsonProperty("tool_choice") Object toolChoice) {
+			@JsonProperty("tool_choice") Object toolChoice,
+			@JsonProperty("response_format") ResponseFormat responseFormat) {
 		 // @formatter:on
 
+		/**
+		 * Create a chat completion request without response format.
+		 */
+		public ChatCompletionRequest(List<ChatCompletionMessage> messages, String model, Integer maxTokens,
+				Double temperature, Double topP, Integer n, Double frequencyPenalty, Double presencePenalty,
+				List<String> stop, Boolean stream, List<FunctionTool> tools, Object toolChoice) {
+			this(messages, model, maxTokens, temperature, topP, n, frequencyPenalty, presencePenalty, stop, stream,
+					tools, toolChoice, null);
+		}
+
 		/**
 		 * Shortcut constructor for a chat completion request with the given messages and
 		 * model.
@@ -392,6 +669,51 @@ public class MoonshotApi {
 
 	}
 
+	/**
+	 * The format of the message generated by the model.
+	 *
+	 * @param type The type of the format.
+	 */
+	@JsonInclude(Include.NON_NULL)
+	public record ResponseFormat(@JsonProperty("type") Type type) {
+
+		/**
+		 * The format types.
+		 */
+		public enum Type {
+
+			/**
+			 * Free text, the default.
+			 */
+			@JsonProperty("text")
+			TEXT,
+			/**
+			 * A valid JSON object. The prompt must ask for JSON and describe its
+			 * structure.
+			 */
+			@JsonProperty("json_object")
+			JSON_OBJECT;
+
+			/**
+			 * Resolve a format type leniently: the API values, the constant names and
+			 * {@code json} are accepted, ignoring the case.
+			 * @param value the type value.
+			 * @return the format type.
+			 */
+			@JsonCreator
+			public static Type from(String value) {
+				Assert.hasText(value, "value cannot be null or empty");
+				return switch (value.trim().toLowerCase(Locale.ROOT)) {
+					case "text" -> TEXT;
+					case "json", "json_object" -> JSON_OBJECT;
+					default -> throw new IllegalArgumentException("Unknown response format type: " + value);
+				};
+			}
+
+		}
+
+	}
+
 	/**
 	 * Message comprising the conversation.
 	 *
@@ -401,6 +723,8 @@ public class MoonshotApi {
 	 * @param name The name of the message's author.
 	 * @param toolCallId The ID of the tool call associated with the message.
 	 * @param toolCalls The list of tool calls associated with the message.
+	 * @param partial Whether an assistant message is a prefix the model must continue,
+	 * known as partial mode. The generated content does not repeat the prefix.
 	 */
 	@JsonInclude(Include.NON_NULL)
 	public record ChatCompletionMessage(
@@ -409,10 +733,34 @@ public class MoonshotApi {
 		@JsonProperty("role") Role role,
 		@JsonProperty("name") String name,
 		@JsonProperty("tool_call_id") String toolCallId,
-		@JsonProperty("tool_calls") List<ToolCall> toolCalls
+		@JsonProperty("tool_calls") List<ToolCall> toolCalls,
+		@JsonProperty("partial") Boolean partial
 	// @formatter:on
 	) {
 
+		/**
+		 * Create a chat completion message that is not partial.
+		 * @param content The contents of the message.
+		 * @param role The role of the author of this message.
+		 * @param name The name of the message's author.
+		 * @param toolCallId The ID of the tool call associated with the message.
+		 * @param toolCalls The list of tool calls associated with the message.
+		 */
+		public ChatCompletionMessage(Object content, Role role, String name, String toolCallId,
+				List<ToolCall> toolCalls) {
+			this(content, role, name, toolCallId, toolCalls, null);
+		}
+
+		/**
+		 * Create a partial assistant message, a prefix of the response the model must
+		 * continue.
+		 * @param content The prefix of the response.
+		 * @return the partial message.
+		 */
+		public static ChatCompletionMessage partial(String content) {
+			return new ChatCompletionMessage(content, Role.ASSISTANT, null, null, null, true);
+		}
+
 		/**
 		 * Create a chat completion message with the given content and role. All other
 		 * fields are null.
@@ -474,10 +822,23 @@ public class MoonshotApi {
 		 * @param type The type of tool call the output is required for. For now, this is
 		 * always function.
 		 * @param function The function definition.
+		 * @param index The index of the tool call in the message. Only set on streamed
+		 * deltas, where it identifies the tool call a delta belongs to when the model
+		 * calls several tools in parallel.
 		 */
 		@JsonInclude(Include.NON_NULL)
 		public record ToolCall(@JsonProperty("id") String id, @JsonProperty("type") String type,
-				@JsonProperty("function") ChatCompletionFunction function) {
+				@JsonProperty("function") ChatCompletionFunction function, @JsonProperty("index") Integer index) {
+
+			/**
+			 * Create a tool call without an index.
+			 * @param id The ID of the tool call.
+			 * @param type The type of tool call.
+			 * @param function The function definition.
+			 */
+			public ToolCall(String id, String type, ChatCompletionFunction function) {
+				this(id, type, function, null);
+			}
 
 		}
 
@@ -623,18 +984,92 @@ public class MoonshotApi {
 		 * @param parameters The parameters the functions accepts, described as a JSON
 		 * Schema object. To describe a function that accepts no parameters, provide the
 		 * value {"type": "object", "properties": {}}.
+		 * @param rawParameters The parameters as a JSON Schema document, written verbatim
+		 * in place of {@code parameters} if set.
 		 */
 		public record Function(@JsonProperty("description") String description, @JsonProperty("name") String name,
-				@JsonProperty("parameters") Map<String, Object> parameters) {
+				@JsonProperty("parameters") Map<String, Object> parameters,
+				@JsonIgnore SerializedString rawParameters) implements JsonSerializable {
 
 			/**
 			 * Create tool function definition.
 			 * @param description tool function description.
 			 * @param name tool function name.
+			 * @param parameters tool function schema.
+			 */
+			@JsonCreator
+			public Function(@JsonProperty("description") String description, @JsonProperty("name") String name,
+					@JsonProperty("parameters") Map<String, Object> parameters) {
+				this(description, name, parameters, null);
+			}
+
+			/**
+			 * Create tool function definition. The schema is checked but not parsed, it
+			 * is written verbatim in the requests, as UTF-8 bytes encoded once.
+			 * @param description tool function description.
+			 * @param name tool function name.
 			 * @param jsonSchema tool function schema as json.
 			 */
 			public Function(String description, String name, String jsonSchema) {
-				this(description, name, ModelOptionsUtils.jsonToMap(jsonSchema));
+				this(description, name, null, rawSchema(jsonSchema));
+			}
+
+			/**
+			 * The parameters of the function, parsed from the raw JSON Schema document if
+			 * the function was created from one.
+			 */
+			@Override
+			public Map<String, Object> parameters() {
+				if (this.parameters == null && this.rawParameters != null) {
+					return ModelOptionsUtils.jsonToMap(this.rawParameters.getValue());
+				}
+				return this.parameters;
+			}
+
+			@Override
+			public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+				generator.writeStartObject();
+				if (this.description != null) {
+					generator.writeStringField("description", this.description);
+				}
+				if (this.name != null) {
+					generator.writeStringField("name", this.name);
+				}
+				if (this.rawParameters != null && !(generator instanceof TokenBuffer)) {
+					generator.writeFieldName("parameters");
+					generator.writeRawValue(this.rawParameters);
+				}
+				else if (parameters() != null) {
+					// A token buffer is converted to objects, it needs the parsed schema.
+					generator.writeFieldName("parameters");
+					serializers.defaultSerializeValue(parameters(), generator);
+				}
+				generator.writeEndObject();
+			}
+
+			@Override
+			public void serializeWithType(JsonGenerator generator, SerializerProvider serializers,
+					TypeSerializer typeSerializer) throws IOException {
+				serialize(generator, serializers);
+			}
+
+			private static SerializedString rawSchema(String jsonSchema) {
+				if (jsonSchema == null) {
+					return null;
+				}
+				try (JsonParser parser = ModelOptionsUtils.OBJECT_MAPPER.getFactory().createParser(jsonSchema)) {
+					if (parser.nextToken() != JsonToken.START_OBJECT) {
+						throw new IllegalArgumentException("The JSON schema must be an object: " + jsonSchema);
+					}
+					parser.skipChildren();
+					if (parser.nextToken() != null) {
+						throw new IllegalArgumentException("Unexpected content after the JSON schema: " + jsonSchema);
+					}
+				}
+				catch (IOException ex) {
+					throw new IllegalArgumentException("Invalid JSON schema: " + jsonSchema, ex);
+				}
+				return new SerializedString(jsonSchema);
 			}
 
 		}
@@ -661,6 +1096,12 @@ public class MoonshotApi {
 
 		private ResponseErrorHandler responseErrorHandler = RetryUtils.DEFAULT_RESPONSE_ERROR_HANDLER;
 
+		private MoonshotStreamWatchdog streamWatchdog;
+
+		private boolean canonicalRequests;
+
+		private MoonshotCompression compression;
+
 		public Builder baseUrl(String baseUrl) {
 			Assert.hasText(baseUrl, "baseUrl cannot be null or empty");
 			this.baseUrl = baseUrl;
@@ -709,10 +1150,29 @@ public class MoonshotApi {
 			return this;
 		}
 
+		public Builder streamWatchdog(MoonshotStreamWatchdog streamWatchdog) {
+			this.streamWatchdog = streamWatchdog;
+			return this;
+		}
+
+		public Builder canonicalRequests(boolean canonicalRequests) {
+			this.canonicalRequests = canonicalRequests;
+			return this;
+		}
+
+		public Builder compression(MoonshotCompression compression) {
+			this.compression = compression;
+			return this;
+		}
+
 		public MoonshotApi build() {
 			Assert.notNull(this.apiKey, "apiKey must be set");
-			return new MoonshotApi(this.baseUrl, this.apiKey, this.headers, this.completionsPath,
+			MoonshotApi moonshotApi = new MoonshotApi(this.baseUrl, this.apiKey, this.headers, this.completionsPath,
 					this.restClientBuilder, this.webClientBuilder, this.responseErrorHandler);
+			moonshotApi.setStreamWatchdog(this.streamWatchdog);
+			moonshotApi.setCanonicalRequests(this.canonicalRequests);
+			moonshotApi.setCompression(this.compression);
+			return moonshotApi;
 		}
 
 	}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotStreamFunctionCallingHelper.WindowMerger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Blocking iterator over the chunks of a chat completion stream, read from the response
+ * body with the calling thread. The SSE events are decoded by a
+ * {@link MoonshotSseDecoder} and the tool call windows are merged by a
+ * {@link WindowMerger}, as on the reactive path. The response is closed once the stream
+ * is exhausted, or earlier by {@link #close()}, which aborts the exchange.
+ * <p>
+ * Closing some responses reads the rest of their body, so that the connection can be
+ * reused, as {@code SimpleClientHttpRequestFactory} does. That would block an early close
+ * until the model finished generating, so the body stream is closed first: the JDK
+ * {@code HttpURLConnection} then drops the connection instead of draining it, and the
+ * {@code java.net.http} client cancels the exchange.
+ * </p>
+ *
+ * @author agent
+ */
+final class MoonshotChunkIterator implements Iterator<ChatCompletionChunk>, Closeable {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final InputStream body;
+
+	private final Closeable response;
+
+	private final MoonshotSseDecoder sseDecoder = new MoonshotSseDecoder();
+
+	private final MoonshotStreamFunctionCallingHelper helper;
+
+	private final WindowMerger merger;
+
+	private final ArrayDeque<ChatCompletionChunk> ready = new ArrayDeque<>();
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private boolean exhausted;
+
+	MoonshotChunkIterator(InputStream body, Closeable response, MoonshotStreamFunctionCallingHelper helper) {
+		this.body = body;
+		this.response = response;
+		this.helper = helper;
+		this.merger = helper.windowMerger();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (this.ready.isEmpty() && !this.exhausted) {
+			fill();
+		}
+		return !this.ready.isEmpty();
+	}
+
+	@Override
+	public ChatCompletionChunk next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return this.ready.poll();
+	}
+
+	private void fill() {
+		int read;
+		try {
+			read = this.body.read(this.buffer);
+		}
+		catch (IOException ex) {
+			release();
+			throw new UncheckedIOException("Failed to read the chat completion stream", ex);
+		}
+		try {
+			if (read > 0) {
+				offer(this.helper.splitChoices(this.sseDecoder.decode(this.buffer, 0, read)));
+			}
+			if (read < 0 || this.sseDecoder.isDone()) {
+				offer(this.helper.splitChoices(this.sseDecoder.complete()));
+				ChatCompletionChunk pending;
+				while ((pending = this.merger.complete()) != null) {
+					this.ready.add(pending);
+				}
+				release();
+			}
+		}
+		catch (RuntimeException ex) {
+			release();
+			throw ex;
+		}
+	}
+
+	private void offer(Iterable<ChatCompletionChunk> chunks) {
+		for (ChatCompletionChunk chunk : chunks) {
+			ChatCompletionChunk merged = this.merger.next(chunk);
+			if (merged != null) {
+				this.ready.add(merged);
+			}
+		}
+	}
+
+	/**
+	 * Abort the stream, discarding the chunks not consumed yet.
+	 */
+	@Override
+	public void close() {
+		this.ready.clear();
+		if (this.exhausted) {
+			return;
+		}
+		try {
+			this.body.close();
+		}
+		catch (IOException ex) {
+			// The response is closed below either way.
+		}
+		release();
+	}
+
+	private void release() {
+		if (this.exhausted) {
+			return;
+		}
+		this.exhausted = true;
+		try {
+			this.response.close();
+		}
+		catch (IOException ex) {
+			// Nothing left to read, the stream is abandoned either way.
+		}
+	}
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.reactivestreams.Subscription;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotStreamFunctionCallingHelper.WindowMerger;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Reactor operator merging the tool call windows of a chat completion stream in place.
+ * Each subscriber gets its own {@link WindowMerger}, chunks outside of tool call windows
+ * are relayed as they arrive and buffered chunks are compensated by requesting one more
+ * chunk from upstream. The windows still open when the stream completes are emitted
+ * before the completion signal, as demand for them arrives.
+ *
+ * @author agent
+ */
+final class MoonshotChunkMergeOperator extends FluxOperator<ChatCompletionChunk, ChatCompletionChunk> {
+
+	private final MoonshotStreamFunctionCallingHelper helper;
+
+	MoonshotChunkMergeOperator(Flux<? extends ChatCompletionChunk> source, MoonshotStreamFunctionCallingHelper helper) {
+		super(source);
+		this.helper = helper;
+	}
+
+	@Override
+	public void subscribe(CoreSubscriber<? super ChatCompletionChunk> actual) {
+		this.source.subscribe(new MergeSubscriber(actual, this.helper.windowMerger()));
+	}
+
+	static final class MergeSubscriber implements CoreSubscriber<ChatCompletionChunk>, Subscription {
+
+		private static final int ACTIVE = 0;
+
+		private static final int TAIL_PENDING = 1;
+
+		private static final int TERMINATED = 2;
+
+		private static final AtomicLongFieldUpdater<MergeSubscriber> REQUESTED = AtomicLongFieldUpdater
+			.newUpdater(MergeSubscriber.class, "requested");
+
+		private static final AtomicIntegerFieldUpdater<MergeSubscriber> STATE = AtomicIntegerFieldUpdater
+			.newUpdater(MergeSubscriber.class, "state");
+
+		private static final AtomicIntegerFieldUpdater<MergeSubscriber> WIP = AtomicIntegerFieldUpdater
+			.newUpdater(MergeSubscriber.class, "wip");
+
+		private final CoreSubscriber<? super ChatCompletionChunk> actual;
+
+		private final WindowMerger merger;
+
+		private Subscription upstream;
+
+		private boolean done;
+
+		private final ArrayDeque<ChatCompletionChunk> tail = new ArrayDeque<>(1);
+
+		private volatile long requested;
+
+		private volatile int state;
+
+		private volatile int wip;
+
+		MergeSubscriber(CoreSubscriber<? super ChatCompletionChunk> actual, WindowMerger merger) {
+			this.actual = actual;
+			this.merger = merger;
+		}
+
+		@Override
+		public Context currentContext() {
+			return this.actual.currentContext();
+		}
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			if (Operators.validate(this.upstream, subscription)) {
+				this.upstream = subscription;
+				this.actual.onSubscribe(this);
+			}
+		}
+
+		@Override
+		public void onNext(ChatCompletionChunk chunk) {
+			if (this.done) {
+				Operators.onNextDropped(chunk, currentContext());
+				return;
+			}
+			ChatCompletionChunk merged;
+			try {
+				merged = this.merger.next(chunk);
+			}
+			catch (Throwable ex) {
+				onError(Operators.onOperatorError(this.upstream, ex, chunk, currentContext()));
+				return;
+			}
+			if (merged == null) {
+				// The chunk was buffered, ask for another one in its place.
+				this.upstream.request(1);
+				return;
+			}
+			Operators.produced(REQUESTED, this, 1);
+			this.actual.onNext(merged);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			if (this.done) {
+				Operators.onErrorDropped(throwable, currentContext());
+				return;
+			}
+			this.done = true;
+			this.actual.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			if (this.done) {
+				return;
+			}
+			this.done = true;
+			try {
+				ChatCompletionChunk pending;
+				while ((pending = this.merger.complete()) != null) {
+					this.tail.add(pending);
+				}
+			}
+			catch (Throwable ex) {
+				this.actual.onError(Operators.onOperatorError(ex, currentContext()));
+				return;
+			}
+			if (this.tail.isEmpty()) {
+				this.actual.onComplete();
+				return;
+			}
+			this.state = TAIL_PENDING;
+			drainTail();
+		}
+
+		@Override
+		public void request(long n) {
+			if (Operators.validate(n)) {
+				Operators.addCap(REQUESTED, this, n);
+				if (this.state == TAIL_PENDING) {
+					drainTail();
+					return;
+				}
+				this.upstream.request(n);
+			}
+		}
+
+		@Override
+		public void cancel() {
+			STATE.set(this, TERMINATED);
+			this.upstream.cancel();
+		}
+
+		/**
+		 * Emit the tail windows as demand allows, then complete. The tail is only filled
+		 * before the state turns to TAIL_PENDING and only polled by the thread winning
+		 * the work-in-progress counter.
+		 */
+		private void drainTail() {
+			if (WIP.getAndIncrement(this) != 0) {
+				return;
+			}
+			int missed = 1;
+			for (;;) {
+				while (this.state == TAIL_PENDING && this.requested > 0 && !this.tail.isEmpty()) {
+					Operators.produced(REQUESTED, this, 1);
+					this.actual.onNext(this.tail.poll());
+				}
+				if (this.tail.isEmpty() && STATE.compareAndSet(this, TAIL_PENDING, TERMINATED)) {
+					this.actual.onComplete();
+					return;
+				}
+				missed = WIP.addAndGet(this, -missed);
+				if (missed == 0) {
+					return;
+				}
+			}
+		}
+
+	}
+
+}
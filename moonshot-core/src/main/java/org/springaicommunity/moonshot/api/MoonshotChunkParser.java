@@ -0,0 +1,307 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk.ChunkChoice;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionFinishReason;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ChatCompletionFunction;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springframework.ai.model.ModelOptionsUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming JSON parser for {@link ChatCompletionChunk}s. The chunk, its choices and the
+ * delta message are read token by token with a Jackson {@link JsonParser} instead of
+ * going through data binding and record reflection.
+ * <p>
+ * The {@code id}, {@code object} and {@code model} values repeat in every chunk of a
+ * stream. A parser remembers the last value of each and hands back the same instance as
+ * long as the incoming characters match, so a stream holds a single copy of each. A
+ * parser therefore belongs to a single stream and must not be shared.
+ * </p>
+ *
+ * @author agent
+ */
+public class MoonshotChunkParser {
+
+	private static final JsonFactory JSON_FACTORY = ModelOptionsUtils.OBJECT_MAPPER.getFactory();
+
+	private String id;
+
+	private String object;
+
+	private String model;
+
+	private String toolCallType;
+
+	/**
+	 * Parse a single chunk from the given byte range.
+	 * @param bytes the source array.
+	 * @param offset the offset of the JSON document.
+	 * @param length the length of the JSON document.
+	 * @return the parsed chunk.
+	 * @throws IOException if the content is not a valid chunk document.
+	 */
+	public ChatCompletionChunk parse(byte[] bytes, int offset, int length) throws IOException {
+		try (JsonParser parser = JSON_FACTORY.createParser(bytes, offset, length)) {
+			parser.nextToken();
+			return readChunk(parser);
+		}
+	}
+
+	private ChatCompletionChunk readChunk(JsonParser parser) throws IOException {
+		expectStartObject(parser);
+		String id = null;
+		String object = null;
+		Long created = null;
+		String model = null;
+		List<ChunkChoice> choices = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "id" -> id = this.id = canonical(parser, token, this.id);
+				case "object" -> object = this.object = canonical(parser, token, this.object);
+				case "created" -> created = (token == JsonToken.VALUE_NULL) ? null : parser.getLongValue();
+				case "model" -> model = this.model = canonical(parser, token, this.model);
+				case "choices" -> choices = readChoices(parser, token);
+				default -> parser.skipChildren();
+			}
+		}
+		return new ChatCompletionChunk(id, object, created, model, choices);
+	}
+
+	private List<ChunkChoice> readChoices(JsonParser parser, JsonToken token) throws IOException {
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		expectStartArray(parser, token);
+		List<ChunkChoice> choices = new ArrayList<>(1);
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			choices.add(readChoice(parser));
+		}
+		return choices;
+	}
+
+	private ChunkChoice readChoice(JsonParser parser) throws IOException {
+		expectStartObject(parser);
+		Integer index = null;
+		ChatCompletionMessage delta = null;
+		ChatCompletionFinishReason finishReason = null;
+		MoonshotApi.Usage usage = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "index" -> index = readInteger(parser, token);
+				case "delta" -> delta = (token == JsonToken.VALUE_NULL) ? null : readMessage(parser);
+				case "finish_reason" -> finishReason = readFinishReason(parser, token);
+				case "usage" -> usage = (token == JsonToken.VALUE_NULL) ? null : readUsage(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new ChunkChoice(index, delta, finishReason, usage);
+	}
+
+	private ChatCompletionMessage readMessage(JsonParser parser) throws IOException {
+		expectStartObject(parser);
+		Object content = null;
+		Role role = null;
+		String name = null;
+		String toolCallId = null;
+		List<ToolCall> toolCalls = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "content" -> content = readContent(parser, token);
+				case "role" -> role = readRole(parser, token);
+				case "name" -> name = readText(parser, token);
+				case "tool_call_id" -> toolCallId = readText(parser, token);
+				case "tool_calls" -> toolCalls = readToolCalls(parser, token);
+				default -> parser.skipChildren();
+			}
+		}
+		return new ChatCompletionMessage(content, role, name, toolCallId, toolCalls);
+	}
+
+	private List<ToolCall> readToolCalls(JsonParser parser, JsonToken token) throws IOException {
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		expectStartArray(parser, token);
+		List<ToolCall> toolCalls = new ArrayList<>(1);
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			toolCalls.add(readToolCall(parser));
+		}
+		return toolCalls;
+	}
+
+	private ToolCall readToolCall(JsonParser parser) throws IOException {
+		expectStartObject(parser);
+		String id = null;
+		String type = null;
+		ChatCompletionFunction function = null;
+		Integer index = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "index" -> index = readInteger(parser, token);
+				case "id" -> id = readText(parser, token);
+				case "type" -> type = this.toolCallType = canonical(parser, token, this.toolCallType);
+				case "function" -> function = (token == JsonToken.VALUE_NULL) ? null : readFunction(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new ToolCall(id, type, function, index);
+	}
+
+	private ChatCompletionFunction readFunction(JsonParser parser) throws IOException {
+		expectStartObject(parser);
+		String name = null;
+		String arguments = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "name" -> name = readText(parser, token);
+				case "arguments" -> arguments = readText(parser, token);
+				default -> parser.skipChildren();
+			}
+		}
+		return new ChatCompletionFunction(name, arguments);
+	}
+
+	private MoonshotApi.Usage readUsage(JsonParser parser) throws IOException {
+		expectStartObject(parser);
+		Integer promptTokens = null;
+		Integer totalTokens = null;
+		Integer completionTokens = null;
+		Integer cachedTokens = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "prompt_tokens" -> promptTokens = readInteger(parser, token);
+				case "total_tokens" -> totalTokens = readInteger(parser, token);
+				case "completion_tokens" -> completionTokens = readInteger(parser, token);
+				case "cached_tokens" -> cachedTokens = readInteger(parser, token);
+				default -> parser.skipChildren();
+			}
+		}
+		return new MoonshotApi.Usage(promptTokens, totalTokens, completionTokens, cachedTokens);
+	}
+
+	private static Object readContent(JsonParser parser, JsonToken token) throws IOException {
+		if (token == JsonToken.VALUE_STRING) {
+			return parser.getText();
+		}
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		// Non-text content is not produced by the streaming API, fall back to data
+		// binding to keep parity with the ChatCompletionMessage record.
+		return parser.readValueAs(Object.class);
+	}
+
+	private static Role readRole(JsonParser parser, JsonToken token) throws IOException {
+		String value = readText(parser, token);
+		if (value == null) {
+			return null;
+		}
+		return switch (value) {
+			case "system" -> Role.SYSTEM;
+			case "user" -> Role.USER;
+			case "assistant" -> Role.ASSISTANT;
+			case "tool" -> Role.TOOL;
+			default -> throw new JsonParseException(parser, "Unknown role: " + value);
+		};
+	}
+
+	private static ChatCompletionFinishReason readFinishReason(JsonParser parser, JsonToken token) throws IOException {
+		String value = readText(parser, token);
+		if (value == null) {
+			return null;
+		}
+		return switch (value) {
+			case "stop" -> ChatCompletionFinishReason.STOP;
+			case "length" -> ChatCompletionFinishReason.LENGTH;
+			case "content_filter" -> ChatCompletionFinishReason.CONTENT_FILTER;
+			case "tool_calls" -> ChatCompletionFinishReason.TOOL_CALLS;
+			case "tool_call" -> ChatCompletionFinishReason.TOOL_CALL;
+			// A finished choice must not look unfinished, as data binding it fails.
+			default -> throw new JsonParseException(parser, "Unknown finish reason: " + value);
+		};
+	}
+
+	private static String readText(JsonParser parser, JsonToken token) throws IOException {
+		return (token == JsonToken.VALUE_NULL) ? null : parser.getValueAsString();
+	}
+
+	private static Integer readInteger(JsonParser parser, JsonToken token) throws IOException {
+		return (token == JsonToken.VALUE_NULL) ? null : parser.getValueAsInt();
+	}
+
+	/**
+	 * Return the given cached instance if it matches the current text value, a new string
+	 * otherwise.
+	 */
+	private static String canonical(JsonParser parser, JsonToken token, String cached) throws IOException {
+		if (token != JsonToken.VALUE_STRING) {
+			return readText(parser, token);
+		}
+		if (cached != null && cached.length() == parser.getTextLength()) {
+			char[] chars = parser.getTextCharacters();
+			int offset = parser.getTextOffset();
+			boolean matches = true;
+			for (int i = 0; i < cached.length(); i++) {
+				if (chars[offset + i] != cached.charAt(i)) {
+					matches = false;
+					break;
+				}
+			}
+			if (matches) {
+				return cached;
+			}
+		}
+		return parser.getText();
+	}
+
+	private static void expectStartObject(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			throw new JsonParseException(parser, "Expected start of object but was " + parser.currentToken());
+		}
+	}
+
+	private static void expectStartArray(JsonParser parser, JsonToken token) throws IOException {
+		if (token != JsonToken.START_ARRAY) {
+			throw new JsonParseException(parser, "Expected start of array but was " + token);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression settings of the chat completion requests. The request bodies of at least
+ * the minimum size are compressed with the given encoding, and the compressed responses
+ * are accepted. The compressed responses are decompressed as they are read, including the
+ * streamed ones.
+ *
+ * @param encoding the content encoding of the compressed request bodies.
+ * @param minRequestSize the minimum size, in bytes, of the request bodies to compress.
+ * @author agent
+ */
+public record MoonshotCompression(Encoding encoding, int minRequestSize) {
+
+	/**
+	 * The default minimum size of the request bodies to compress, smaller bodies do not
+	 * save enough to be worth compressing.
+	 */
+	public static final int DEFAULT_MIN_REQUEST_SIZE = 1024;
+
+	/**
+	 * The encodings accepted for the responses.
+	 */
+	static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	public MoonshotCompression {
+		Assert.notNull(encoding, "encoding cannot be null");
+		Assert.isTrue(minRequestSize >= 0, "minRequestSize must not be negative");
+	}
+
+	/**
+	 * @return gzip compression of the request bodies of at least
+	 * {@link #DEFAULT_MIN_REQUEST_SIZE} bytes.
+	 */
+	public static MoonshotCompression gzip() {
+		return new MoonshotCompression(Encoding.GZIP, DEFAULT_MIN_REQUEST_SIZE);
+	}
+
+	/**
+	 * @return deflate compression of the request bodies of at least
+	 * {@link #DEFAULT_MIN_REQUEST_SIZE} bytes.
+	 */
+	public static MoonshotCompression deflate() {
+		return new MoonshotCompression(Encoding.DEFLATE, DEFAULT_MIN_REQUEST_SIZE);
+	}
+
+	/**
+	 * @return the given body compressed, or null if it is too small to be compressed.
+	 */
+	byte[] compress(byte[] body) {
+		if (body.length < this.minRequestSize) {
+			return null;
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream(body.length / 4 + 64);
+		try (OutputStream compressed = (this.encoding == Encoding.GZIP) ? new GZIPOutputStream(output)
+				: new DeflaterOutputStream(output)) {
+			compressed.write(body);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to compress the request body", ex);
+		}
+		return output.toByteArray();
+	}
+
+	/**
+	 * The content encodings.
+	 */
+	public enum Encoding {
+
+		/**
+		 * The gzip format.
+		 */
+		GZIP("gzip"),
+
+		/**
+		 * The zlib format, named deflate in HTTP.
+		 */
+		DEFLATE("deflate");
+
+		private final String value;
+
+		Encoding(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return this.value;
+		}
+
+		/**
+		 * @param contentEncoding a content encoding header value.
+		 * @return the encoding with the given name, or null if it is not supported.
+		 */
+		static Encoding from(String contentEncoding) {
+			if (contentEncoding == null) {
+				return null;
+			}
+			for (Encoding encoding : values()) {
+				if (encoding.value.equalsIgnoreCase(contentEncoding.trim())) {
+					return encoding;
+				}
+			}
+			return null;
+		}
+
+	}
+
+}
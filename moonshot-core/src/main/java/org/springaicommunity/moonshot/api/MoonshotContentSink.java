@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Destination of the content deltas of a streamed chat completion, see
+ * {@link MoonshotApi#streamContent(MoonshotApi.ChatCompletionRequest, MoonshotContentSink, MoonshotFlushPolicy)}.
+ * Byte oriented sinks encode the deltas to UTF-8 through a reusable buffer. A sink
+ * belongs to a single stream and is never closed by the stream.
+ *
+ * @author agent
+ */
+public interface MoonshotContentSink {
+
+	/**
+	 * Write a content delta.
+	 * @param delta the delta to write.
+	 * @throws IOException if the delta could not be written.
+	 */
+	void write(String delta) throws IOException;
+
+	/**
+	 * Flush the content written so far.
+	 * @throws IOException if the sink could not be flushed.
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Write the content held back, if any, and flush the sink, once the content is
+	 * complete. Byte oriented sinks hold back a high surrogate ending a delta, until the
+	 * next delta completes the pair.
+	 * @throws IOException if the content could not be written or flushed.
+	 */
+	default void complete() throws IOException {
+		flush();
+	}
+
+	/**
+	 * @param outputStream the stream to write the UTF-8 encoded content to.
+	 * @return a sink writing to the given stream.
+	 */
+	static MoonshotContentSink of(OutputStream outputStream) {
+		Assert.notNull(outputStream, "outputStream cannot be null");
+		return new Utf8ContentSink() {
+
+			@Override
+			protected void write(ByteBuffer bytes) throws IOException {
+				outputStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+			}
+
+			@Override
+			public void flush() throws IOException {
+				outputStream.flush();
+			}
+
+		};
+	}
+
+	/**
+	 * @param writer the writer to write the content to.
+	 * @return a sink writing to the given writer.
+	 */
+	static MoonshotContentSink of(Writer writer) {
+		Assert.notNull(writer, "writer cannot be null");
+		return new MoonshotContentSink() {
+
+			@Override
+			public void write(String delta) throws IOException {
+				writer.write(delta);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				writer.flush();
+			}
+
+		};
+	}
+
+	/**
+	 * @param channel the channel to write the UTF-8 encoded content to.
+	 * @return a sink writing to the given channel. Flushing is a no-op since channel
+	 * writes are not buffered.
+	 */
+	static MoonshotContentSink of(WritableByteChannel channel) {
+		Assert.notNull(channel, "channel cannot be null");
+		return new Utf8ContentSink() {
+
+			@Override
+			protected void write(ByteBuffer bytes) throws IOException {
+				while (bytes.hasRemaining()) {
+					channel.write(bytes);
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of the messages of a conversation, holding their encoded JSON. Each message is
+ * encoded once, when it is appended, and the requests built with {@link #messages()} have
+ * their messages written from the encoded JSON, so that a conversation growing turn after
+ * turn, such as a tool calling loop, only encodes the messages of the last turn. The last
+ * messages can be rewritten by truncating the conversation before appending them again.
+ * <p>
+ * The lists returned by {@link #messages()} are immutable snapshots, they are not
+ * affected by the messages appended or truncated later.
+ * </p>
+ * <p>
+ * The messages must be encoded as the requests are: a canonical session is spliced in the
+ * requests of a {@link MoonshotApi} with canonical requests only, the messages of a
+ * session encoded otherwise are encoded again.
+ * </p>
+ *
+ * @author agent
+ */
+public final class MoonshotConversationSession {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final boolean canonical;
+
+	private ChatCompletionMessage[] messages = new ChatCompletionMessage[INITIAL_CAPACITY];
+
+	/**
+	 * The end offset of the encoded JSON of each message.
+	 */
+	private int[] ends = new int[INITIAL_CAPACITY];
+
+	private int size;
+
+	private byte[] encoded = new byte[INITIAL_CAPACITY * 64];
+
+	private int encodedLength;
+
+	/**
+	 * Create a session encoding the messages as the requests that are not canonical.
+	 */
+	public MoonshotConversationSession() {
+		this(false);
+	}
+
+	/**
+	 * Create a session.
+	 * @param canonical whether the messages are encoded canonically, as the requests of a
+	 * {@link MoonshotApi} with canonical requests.
+	 */
+	public MoonshotConversationSession(boolean canonical) {
+		this.canonical = canonical;
+	}
+
+	/**
+	 * Append the given messages to the conversation.
+	 * @param messages the messages to append.
+	 */
+	public synchronized void append(List<ChatCompletionMessage> messages) {
+		Assert.notNull(messages, "messages cannot be null");
+		Assert.noNullElements(messages, "messages cannot contain null elements");
+		if (messages.isEmpty()) {
+			return;
+		}
+		byte[][] json = encode(messages, this.size == 0, this.canonical);
+		int length = 0;
+		for (byte[] message : json) {
+			length += message.length;
+		}
+		// The arrays are replaced when they grow, the snapshots keep the previous ones.
+		if (this.size + messages.size() > this.messages.length) {
+			int capacity = Math.max(this.messages.length * 2, this.size + messages.size());
+			this.messages = Arrays.copyOf(this.messages, capacity);
+			this.ends = Arrays.copyOf(this.ends, capacity);
+		}
+		if (this.encodedLength + length > this.encoded.length) {
+			this.encoded = Arrays.copyOf(this.encoded, Math.max(this.encoded.length * 2, this.encodedLength + length));
+		}
+		for (int i = 0; i < json.length; i++) {
+			System.arraycopy(json[i], 0, this.encoded, this.encodedLength, json[i].length);
+			this.encodedLength += json[i].length;
+			this.messages[this.size] = messages.get(i);
+			this.ends[this.size++] = this.encodedLength;
+		}
+	}
+
+	/**
+	 * Remove the messages following the given number of messages.
+	 * @param size the number of messages to keep.
+	 */
+	public synchronized void truncate(int size) {
+		Assert.isTrue(size >= 0 && size <= this.size, "size must be between 0 and the size of the conversation");
+		if (size == this.size) {
+			return;
+		}
+		// The snapshots share the arrays, the next appends must not overwrite them.
+		this.messages = Arrays.copyOf(this.messages, this.messages.length);
+		this.encoded = Arrays.copyOf(this.encoded, this.encoded.length);
+		Arrays.fill(this.messages, size, this.size, null);
+		this.size = size;
+		this.encodedLength = (size > 0) ? this.ends[size - 1] : 0;
+	}
+
+	/**
+	 * @return the number of messages of the conversation.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the messages of the conversation, to build a {@link ChatCompletionRequest}
+	 * with.
+	 */
+	public synchronized List<ChatCompletionMessage> messages() {
+		return new EncodedMessages(this.messages, this.size, this.encoded, this.encodedLength, this.canonical);
+	}
+
+	private static byte[][] encode(List<ChatCompletionMessage> messages, boolean first, boolean canonical) {
+		byte[][] json = new byte[messages.size()][];
+		try (ByteArrayBuilder output = new ByteArrayBuilder()) {
+			for (int i = 0; i < json.length; i++) {
+				if (!first) {
+					output.write(',');
+				}
+				first = false;
+				try (JsonGenerator generator = MoonshotRequestEncoder.createGenerator(output)) {
+					MoonshotRequestEncoder.writeMessage(generator, messages.get(i), canonical);
+				}
+				json[i] = output.toByteArray();
+				output.reset();
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to encode the conversation messages", ex);
+		}
+		return json;
+	}
+
+	/**
+	 * Snapshot of the messages of a conversation with their encoded JSON, the elements of
+	 * a JSON array without the brackets.
+	 */
+	static final class EncodedMessages extends AbstractList<ChatCompletionMessage> implements RandomAccess {
+
+		private final ChatCompletionMessage[] messages;
+
+		private final int size;
+
+		private final byte[] encoded;
+
+		private final int encodedLength;
+
+		private final boolean canonical;
+
+		private EncodedMessages(ChatCompletionMessage[] messages, int size, byte[] encoded, int encodedLength,
+				boolean canonical) {
+			this.messages = messages;
+			this.size = size;
+			this.encoded = encoded;
+			this.encodedLength = encodedLength;
+			this.canonical = canonical;
+		}
+
+		@Override
+		public ChatCompletionMessage get(int index) {
+			if (index < 0 || index >= this.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+			}
+			return this.messages[index];
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		boolean isCanonical() {
+			return this.canonical;
+		}
+
+		void writeTo(ByteArrayBuilder output) {
+			output.write(this.encoded, 0, this.encodedLength);
+		}
+
+	}
+
+}
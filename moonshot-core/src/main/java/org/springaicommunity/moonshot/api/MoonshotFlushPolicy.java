@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springframework.util.Assert;
+
+/**
+ * Decides when a {@link MoonshotContentSink} is flushed while content deltas are written
+ * to it. The sink is always flushed once the stream completes.
+ *
+ * @author agent
+ */
+@FunctionalInterface
+public interface MoonshotFlushPolicy {
+
+	/**
+	 * @param delta the content delta that was just written.
+	 * @param pendingChars the number of characters written since the last flush,
+	 * including the delta.
+	 * @return true if the sink must be flushed.
+	 */
+	boolean shouldFlush(String delta, long pendingChars);
+
+	/**
+	 * @return a policy flushing after every delta.
+	 */
+	static MoonshotFlushPolicy eachDelta() {
+		return (delta, pendingChars) -> true;
+	}
+
+	/**
+	 * @return a policy flushing after every delta that ends a line.
+	 */
+	static MoonshotFlushPolicy onNewline() {
+		return (delta, pendingChars) -> delta.indexOf('\n') >= 0;
+	}
+
+	/**
+	 * @param chars the number of characters to write between two flushes.
+	 * @return a policy flushing once the given number of characters is pending.
+	 */
+	static MoonshotFlushPolicy everyChars(int chars) {
+		Assert.isTrue(chars > 0, "chars must be positive");
+		return (delta, pendingChars) -> pendingChars >= chars;
+	}
+
+	/**
+	 * @return a policy flushing only once the stream completes.
+	 */
+	static MoonshotFlushPolicy atEnd() {
+		return (delta, pendingChars) -> false;
+	}
+
+}
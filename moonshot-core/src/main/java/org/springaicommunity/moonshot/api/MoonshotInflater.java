@@ -0,0 +1,155 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springaicommunity.moonshot.api.MoonshotCompression.Encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Incremental decompression of a gzip or deflate response body, fed with the body chunks
+ * as they arrive, so that a compressed SSE stream is decoded event by event. The gzip
+ * header is parsed here, the gzip trailer is skipped.
+ *
+ * @author agent
+ */
+final class MoonshotInflater {
+
+	private static final int FHCRC = 2;
+
+	private static final int FEXTRA = 4;
+
+	private static final int FNAME = 8;
+
+	private static final int FCOMMENT = 16;
+
+	private final Inflater inflater;
+
+	private final byte[] buffer = new byte[8192];
+
+	/**
+	 * The start of a gzip stream until its header is complete, null once it is parsed.
+	 */
+	private byte[] header;
+
+	MoonshotInflater(Encoding encoding) {
+		boolean gzip = (encoding == Encoding.GZIP);
+		this.inflater = new Inflater(gzip);
+		this.header = gzip ? new byte[0] : null;
+	}
+
+	/**
+	 * Decompress the given chunk of the body.
+	 * @return the decompressed bytes, possibly empty.
+	 * @throws ZipException if the body is not valid compressed data.
+	 */
+	byte[] inflate(byte[] input, int offset, int length) throws ZipException {
+		if (this.header != null) {
+			byte[] pending = Arrays.copyOf(this.header, this.header.length + length);
+			System.arraycopy(input, offset, pending, this.header.length, length);
+			int headerLength = headerLength(pending);
+			if (headerLength < 0) {
+				this.header = pending;
+				return new byte[0];
+			}
+			this.header = null;
+			input = pending;
+			offset = headerLength;
+			length = pending.length - headerLength;
+		}
+		if (this.inflater.finished() || length == 0) {
+			// The trailer and anything after the compressed data.
+			return new byte[0];
+		}
+		this.inflater.setInput(input, offset, length);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			int inflated;
+			do {
+				// A full buffer may leave output pending in the inflater.
+				inflated = this.inflater.inflate(this.buffer);
+				output.write(this.buffer, 0, inflated);
+			}
+			while (inflated == this.buffer.length
+					|| (inflated > 0 && !this.inflater.finished() && !this.inflater.needsInput()));
+		}
+		catch (DataFormatException ex) {
+			ZipException zipException = new ZipException("Invalid compressed response body: " + ex.getMessage());
+			zipException.initCause(ex);
+			throw zipException;
+		}
+		if (this.inflater.needsDictionary()) {
+			throw new ZipException("Compressed response bodies with a preset dictionary are not supported");
+		}
+		return output.toByteArray();
+	}
+
+	/**
+	 * Release the native resources of the inflater.
+	 */
+	void end() {
+		this.inflater.end();
+	}
+
+	/**
+	 * @return the length of the gzip header at the start of the given bytes, or -1 if
+	 * they do not hold the whole header yet.
+	 */
+	private static int headerLength(byte[] bytes) throws ZipException {
+		if (bytes.length < 10) {
+			return -1;
+		}
+		if ((bytes[0] & 0xff) != 0x1f || (bytes[1] & 0xff) != 0x8b || bytes[2] != 8) {
+			throw new ZipException("Not in gzip format");
+		}
+		int flags = bytes[3] & 0xff;
+		int position = 10;
+		if ((flags & FEXTRA) != 0) {
+			if (bytes.length < position + 2) {
+				return -1;
+			}
+			position += 2 + ((bytes[position] & 0xff) | ((bytes[position + 1] & 0xff) << 8));
+		}
+		if ((flags & FNAME) != 0) {
+			position = skipZeroTerminated(bytes, position);
+		}
+		if ((flags & FCOMMENT) != 0) {
+			position = skipZeroTerminated(bytes, position);
+		}
+		if ((flags & FHCRC) != 0 && position >= 0) {
+			position += 2;
+		}
+		return (position >= 0 && position <= bytes.length) ? position : -1;
+	}
+
+	private static int skipZeroTerminated(byte[] bytes, int position) {
+		if (position < 0) {
+			return -1;
+		}
+		for (int i = position; i < bytes.length; i++) {
+			if (bytes[i] == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Incremental parser of a JSON document streamed as content deltas, typically generated
+ * with the {@link MoonshotApi.ResponseFormat.Type#JSON_OBJECT} response format. The
+ * deltas are fed to a non-blocking Jackson parser as they arrive, and each value of
+ * interest is emitted as soon as its closing token is parsed, while the rest of the
+ * document is still being generated. Only the value being completed is buffered.
+ *
+ * @author agent
+ */
+public final class MoonshotJsonStreamParser {
+
+	private static final ObjectMapper OBJECT_MAPPER = ModelOptionsUtils.OBJECT_MAPPER;
+
+	private final JsonParser parser;
+
+	private final ByteArrayFeeder feeder;
+
+	private final Predicate<JsonStreamContext> target;
+
+	private TokenBuffer value;
+
+	private String valueName;
+
+	private int valueDepth;
+
+	private MoonshotJsonStreamParser(Predicate<JsonStreamContext> target) {
+		try {
+			this.parser = OBJECT_MAPPER.getFactory().createNonBlockingByteArrayParser();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to create the JSON parser", ex);
+		}
+		this.feeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
+		this.target = target;
+	}
+
+	/**
+	 * Emit the elements of a streamed JSON array as soon as each is complete.
+	 * @param <T> the type of the elements.
+	 * @param content the content deltas of the document.
+	 * @param field the top-level field of the document holding the array, or null if the
+	 * document is the array.
+	 * @param type the type the elements are bound to.
+	 * @return the elements of the array.
+	 */
+	public static <T> Flux<T> arrayElements(Flux<String> content, @Nullable String field, Class<T> type) {
+		Assert.notNull(content, "content cannot be null");
+		Assert.notNull(type, "type cannot be null");
+		Predicate<JsonStreamContext> target = (field != null)
+				? container -> container.inArray() && isTopLevelObject(container.getParent())
+						&& field.equals(container.getParent().getCurrentName())
+				: container -> container.inArray() && container.getParent().inRoot();
+		return parse(content, target).map(completed -> completed.value(type));
+	}
+
+	/**
+	 * Emit the top-level fields of a streamed JSON object as soon as each is complete.
+	 * @param content the content deltas of the document.
+	 * @return the fields of the object.
+	 */
+	public static Flux<Field> fields(Flux<String> content) {
+		Assert.notNull(content, "content cannot be null");
+		return parse(content, MoonshotJsonStreamParser::isTopLevelObject);
+	}
+
+	private static Flux<Field> parse(Flux<String> content, Predicate<JsonStreamContext> target) {
+		return Flux.defer(() -> {
+			MoonshotJsonStreamParser parser = new MoonshotJsonStreamParser(target);
+			return content.concatMapIterable(parser::feed).concatWith(Flux.defer(() -> {
+				parser.feeder.endOfInput();
+				return Flux.fromIterable(parser.drain());
+			}));
+		});
+	}
+
+	private static boolean isTopLevelObject(JsonStreamContext context) {
+		return context.inObject() && context.getParent().inRoot();
+	}
+
+	private List<Field> feed(String delta) {
+		byte[] bytes = delta.getBytes(StandardCharsets.UTF_8);
+		try {
+			this.feeder.feedInput(bytes, 0, bytes.length);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to parse the streamed JSON", ex);
+		}
+		return drain();
+	}
+
+	private List<Field> drain() {
+		List<Field> completed = new ArrayList<>(1);
+		try {
+			JsonToken token;
+			while ((token = this.parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+				if (this.value == null) {
+					if (token == JsonToken.FIELD_NAME || token.isStructEnd()) {
+						continue;
+					}
+					JsonStreamContext container = token.isStructStart() ? this.parser.getParsingContext().getParent()
+							: this.parser.getParsingContext();
+					if (!this.target.test(container)) {
+						continue;
+					}
+					this.value = new TokenBuffer(this.parser);
+					this.valueName = container.getCurrentName();
+					this.valueDepth = 0;
+				}
+				this.value.copyCurrentEvent(this.parser);
+				if (token.isStructStart()) {
+					this.valueDepth++;
+				}
+				else if (token.isStructEnd()) {
+					this.valueDepth--;
+				}
+				if (this.valueDepth == 0) {
+					completed
+						.add(new Field(this.valueName, OBJECT_MAPPER.readTree(this.value.asParser(OBJECT_MAPPER))));
+					this.value = null;
+				}
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to parse the streamed JSON", ex);
+		}
+		return completed;
+	}
+
+	/**
+	 * A completed value of the streamed document.
+	 *
+	 * @param name the name of the field, or null for an array element.
+	 * @param value the value.
+	 */
+	public record Field(@Nullable String name, JsonNode value) {
+
+		/**
+		 * @param <T> the type of the value.
+		 * @param type the type the value is bound to.
+		 * @return the value bound to the given type.
+		 */
+		public <T> T value(Class<T> type) {
+			try {
+				return OBJECT_MAPPER.treeToValue(this.value, type);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException("Failed to bind the streamed JSON value to " + type.getName(), ex);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springaicommunity.moonshot.api.MoonshotApi.FunctionTool;
+import org.springaicommunity.moonshot.api.MoonshotConversationSession.EncodedMessages;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes {@link ChatCompletionRequest}s to JSON with a Jackson {@link JsonGenerator},
+ * the counterpart of {@link MoonshotChunkParser}. The field names are pre-encoded and the
+ * messages are written without going through data binding, the output is the same as the
+ * one of the object mapper.
+ * <p>
+ * The bodies of the most recent requests are kept, keyed by identity, so that a request
+ * retried after a failure, on the synchronous or the streaming path, is encoded once and
+ * its body reused by every attempt. The requests are weakly referenced.
+ * </p>
+ * <p>
+ * In canonical mode, the same request is always encoded to the same bytes, so that the
+ * requests sharing a prefix have byte-identical prefixes: the tools are ordered by name,
+ * the keys of the JSON objects given as maps, such as the tool parameters, are sorted,
+ * and the raw JSON Schemas are written in their canonical form, computed the first time a
+ * schema is encoded canonically and kept in a soft cache. The messages of a
+ * {@link MoonshotConversationSession} are written as they were encoded if the session
+ * encodes them in the same mode as the requests, they are encoded again otherwise.
+ * </p>
+ *
+ * @author agent
+ */
+final class MoonshotRequestEncoder {
+
+	private static final JsonFactory JSON_FACTORY = ModelOptionsUtils.OBJECT_MAPPER.getFactory();
+
+	private static final int CACHE_SIZE = 8;
+
+	private static final SerializableString MESSAGES = new SerializedString("messages");
+
+	private static final SerializableString MODEL = new SerializedString("model");
+
+	private static final SerializableString MAX_TOKENS = new SerializedString("max_tokens");
+
+	private static final SerializableString TEMPERATURE = new SerializedString("temperature");
+
+	private static final SerializableString TOP_P = new SerializedString("top_p");
+
+	private static final SerializableString N = new SerializedString("n");
+
+	private static final SerializableString FREQUENCY_PENALTY = new SerializedString("frequency_penalty");
+
+	private static final SerializableString PRESENCE_PENALTY = new SerializedString("presence_penalty");
+
+	private static final SerializableString STOP = new SerializedString("stop");
+
+	private static final SerializableString STREAM = new SerializedString("stream");
+
+	private static final SerializableString TOOLS = new SerializedString("tools");
+
+	private static final SerializableString TOOL_CHOICE = new SerializedString("tool_choice");
+
+	private static final SerializableString RESPONSE_FORMAT = new SerializedString("response_format");
+
+	private static final byte[] MESSAGES_START = "{\"messages\":[".getBytes(StandardCharsets.UTF_8);
+
+	private static final SerializableString CONTENT = new SerializedString("content");
+
+	private static final SerializableString ROLE = new SerializedString("role");
+
+	private static final SerializableString NAME = new SerializedString("name");
+
+	private static final SerializableString TOOL_CALL_ID = new SerializedString("tool_call_id");
+
+	private static final SerializableString TOOL_CALLS = new SerializedString("tool_calls");
+
+	private static final SerializableString PARTIAL = new SerializedString("partial");
+
+	private static final SerializableString ID = new SerializedString("id");
+
+	private static final SerializableString TYPE = new SerializedString("type");
+
+	private static final SerializableString FUNCTION = new SerializedString("function");
+
+	private static final SerializableString INDEX = new SerializedString("index");
+
+	private static final SerializableString DESCRIPTION = new SerializedString("description");
+
+	private static final SerializableString PARAMETERS = new SerializedString("parameters");
+
+	private static final SerializableString ARGUMENTS = new SerializedString("arguments");
+
+	private static final SerializableString[] ROLES = new SerializableString[Role.values().length];
+
+	static {
+		for (Role role : Role.values()) {
+			ROLES[role.ordinal()] = new SerializedString(role.name().toLowerCase(Locale.ROOT));
+		}
+	}
+
+	private static final Comparator<FunctionTool> TOOL_ORDER = Comparator.comparing(
+			tool -> (tool.function() != null) ? tool.function().name() : null,
+			Comparator.nullsLast(Comparator.naturalOrder()));
+
+	private static final Map<SerializedString, SerializedString> CANONICAL_SCHEMAS = new ConcurrentReferenceHashMap<>();
+
+	private final boolean canonical;
+
+	private final MoonshotCompression compression;
+
+	private final Encoded[] cache = new Encoded[CACHE_SIZE];
+
+	private int next;
+
+	/**
+	 * Create an encoder.
+	 * @param canonical whether the requests are encoded in canonical mode.
+	 * @param compression the compression of the request bodies, or null to send them
+	 * uncompressed.
+	 */
+	MoonshotRequestEncoder(boolean canonical, MoonshotCompression compression) {
+		this.canonical = canonical;
+		this.compression = compression;
+	}
+
+	/**
+	 * Encode the given request, or return the body of a previous encoding of the same
+	 * request instance.
+	 * @param request the request to encode.
+	 * @return the body of the request, compressed if it is large enough.
+	 */
+	Body encode(ChatCompletionRequest request) {
+		synchronized (this.cache) {
+			for (Encoded encoded : this.cache) {
+				if (encoded != null && encoded.request.get() == request) {
+					return encoded.body;
+				}
+			}
+		}
+		byte[] json = write(request, this.canonical);
+		byte[] compressed = (this.compression != null) ? this.compression.compress(json) : null;
+		Body body = (compressed != null)
+				? new Body(compressed, json.length, this.compression.encoding().getValue(), true)
+				: new Body(json, json.length, null, this.compression != null);
+		synchronized (this.cache) {
+			this.cache[this.next] = new Encoded(new WeakReference<>(request), body);
+			this.next = (this.next + 1) % CACHE_SIZE;
+		}
+		return body;
+	}
+
+	static byte[] write(ChatCompletionRequest request) {
+		return write(request, false);
+	}
+
+	static byte[] write(ChatCompletionRequest request, boolean canonical) {
+		try (ByteArrayBuilder output = new ByteArrayBuilder()) {
+			if (request.messages() instanceof EncodedMessages messages && messages.isCanonical() == canonical) {
+				writeRequest(output, messages, request, canonical);
+			}
+			else {
+				try (JsonGenerator generator = createGenerator(output)) {
+					generator.writeStartObject();
+					if (request.messages() != null) {
+						generator.writeFieldName(MESSAGES);
+						generator.writeStartArray();
+						for (ChatCompletionMessage message : request.messages()) {
+							writeMessage(generator, message, canonical);
+						}
+						generator.writeEndArray();
+					}
+					writeOptions(generator, request, canonical);
+					generator.writeEndObject();
+				}
+			}
+			return output.toByteArray();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to encode the chat completion request", ex);
+		}
+	}
+
+	static JsonGenerator createGenerator(ByteArrayBuilder output) throws IOException {
+		return JSON_FACTORY.createGenerator(output);
+	}
+
+	/**
+	 * Write the request, splicing the encoded messages of a conversation in the body.
+	 */
+	private static void writeRequest(ByteArrayBuilder output, EncodedMessages messages, ChatCompletionRequest request,
+			boolean canonical) throws IOException {
+		byte[] options;
+		try (ByteArrayBuilder optionsOutput = new ByteArrayBuilder();
+				JsonGenerator generator = createGenerator(optionsOutput)) {
+			generator.writeStartObject();
+			writeOptions(generator, request, canonical);
+			generator.writeEndObject();
+			generator.flush();
+			options = optionsOutput.toByteArray();
+		}
+		output.write(MESSAGES_START);
+		messages.writeTo(output);
+		output.write(']');
+		if (options.length > 2) {
+			// Continue the object with the options, replacing their opening brace.
+			output.write(',');
+			output.write(options, 1, options.length - 1);
+		}
+		else {
+			output.write('}');
+		}
+	}
+
+	private static void writeOptions(JsonGenerator generator, ChatCompletionRequest request, boolean canonical)
+			throws IOException {
+		if (request.model() != null) {
+			generator.writeFieldName(MODEL);
+			generator.writeString(request.model());
+		}
+		if (request.maxTokens() != null) {
+			generator.writeFieldName(MAX_TOKENS);
+			generator.writeNumber(request.maxTokens());
+		}
+		writeNumber(generator, TEMPERATURE, request.temperature());
+		writeNumber(generator, TOP_P, request.topP());
+		if (request.n() != null) {
+			generator.writeFieldName(N);
+			generator.writeNumber(request.n());
+		}
+		writeNumber(generator, FREQUENCY_PENALTY, request.frequencyPenalty());
+		writeNumber(generator, PRESENCE_PENALTY, request.presencePenalty());
+		if (request.stop() != null) {
+			generator.writeFieldName(STOP);
+			generator.writeStartArray();
+			for (String stop : request.stop()) {
+				generator.writeString(stop);
+			}
+			generator.writeEndArray();
+		}
+		if (request.stream() != null) {
+			generator.writeFieldName(STREAM);
+			generator.writeBoolean(request.stream());
+		}
+		if (request.tools() != null && canonical) {
+			generator.writeFieldName(TOOLS);
+			writeCanonicalTools(generator, request.tools());
+		}
+		else if (request.tools() != null) {
+			// Function tools serialize themselves, writing raw schemas verbatim.
+			generator.writeFieldName(TOOLS);
+			generator.writeObject(request.tools());
+		}
+		if (request.toolChoice() != null) {
+			generator.writeFieldName(TOOL_CHOICE);
+			writeValue(generator, request.toolChoice(), canonical);
+		}
+		if (request.responseFormat() != null) {
+			generator.writeFieldName(RESPONSE_FORMAT);
+			generator.writeObject(request.responseFormat());
+		}
+	}
+
+	static void writeMessage(JsonGenerator generator, ChatCompletionMessage message, boolean canonical)
+			throws IOException {
+		generator.writeStartObject();
+		if (message.rawContent() instanceof String content) {
+			generator.writeFieldName(CONTENT);
+			generator.writeString(content);
+		}
+		else if (message.rawContent() != null) {
+			generator.writeFieldName(CONTENT);
+			writeValue(generator, message.rawContent(), canonical);
+		}
+		if (message.role() != null) {
+			generator.writeFieldName(ROLE);
+			generator.writeString(ROLES[message.role().ordinal()]);
+		}
+		writeString(generator, NAME, message.name());
+		writeString(generator, TOOL_CALL_ID, message.toolCallId());
+		if (message.toolCalls() != null) {
+			generator.writeFieldName(TOOL_CALLS);
+			writeToolCalls(generator, message.toolCalls());
+		}
+		if (message.partial() != null) {
+			generator.writeFieldName(PARTIAL);
+			generator.writeBoolean(message.partial());
+		}
+		generator.writeEndObject();
+	}
+
+	private static void writeToolCalls(JsonGenerator generator, List<ToolCall> toolCalls) throws IOException {
+		generator.writeStartArray();
+		for (ToolCall toolCall : toolCalls) {
+			generator.writeStartObject();
+			writeString(generator, ID, toolCall.id());
+			writeString(generator, TYPE, toolCall.type());
+			if (toolCall.function() != null) {
+				generator.writeFieldName(FUNCTION);
+				generator.writeStartObject();
+				writeString(generator, NAME, toolCall.function().name());
+				writeString(generator, ARGUMENTS, toolCall.function().arguments());
+				generator.writeEndObject();
+			}
+			if (toolCall.index() != null) {
+				generator.writeFieldName(INDEX);
+				generator.writeNumber(toolCall.index());
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+	}
+
+	private static void writeCanonicalTools(JsonGenerator generator, List<FunctionTool> tools) throws IOException {
+		List<FunctionTool> sorted = new ArrayList<>(tools);
+		sorted.sort(TOOL_ORDER);
+		generator.writeStartArray();
+		for (FunctionTool tool : sorted) {
+			generator.writeStartObject();
+			if (tool.type() != null) {
+				generator.writeFieldName(TYPE);
+				generator.writeObject(tool.type());
+			}
+			FunctionTool.Function function = tool.function();
+			if (function != null) {
+				generator.writeFieldName(FUNCTION);
+				generator.writeStartObject();
+				writeString(generator, DESCRIPTION, function.description());
+				writeString(generator, NAME, function.name());
+				if (function.rawParameters() != null) {
+					generator.writeFieldName(PARAMETERS);
+					generator.writeRawValue(canonicalSchema(function.rawParameters()));
+				}
+				else if (function.parameters() != null) {
+					// Parameters given as a map, sorted as they are written.
+					generator.writeFieldName(PARAMETERS);
+					writeValue(generator, function.parameters(), true);
+				}
+				generator.writeEndObject();
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+	}
+
+	/**
+	 * Return the canonical form of the given raw JSON Schema, parsed and written
+	 * canonically the first time it is requested.
+	 * @param rawParameters the raw JSON Schema.
+	 * @return the JSON Schema with its keys sorted and without whitespace.
+	 */
+	static SerializedString canonicalSchema(SerializedString rawParameters) {
+		return CANONICAL_SCHEMAS.computeIfAbsent(rawParameters,
+				(schema) -> new SerializedString(writeCanonical(ModelOptionsUtils.jsonToMap(schema.getValue()))));
+	}
+
+	/**
+	 * Write the given value canonically, with the keys of its maps sorted.
+	 * @param value the value to write.
+	 * @return the JSON of the value.
+	 */
+	static String writeCanonical(Object value) {
+		try (ByteArrayBuilder output = new ByteArrayBuilder()) {
+			try (JsonGenerator generator = createGenerator(output)) {
+				writeValue(generator, value, true);
+			}
+			return new String(output.toByteArray(), StandardCharsets.UTF_8);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to encode the value", ex);
+		}
+	}
+
+	/**
+	 * Write the given value, sorting the keys of its maps in canonical mode.
+	 */
+	private static void writeValue(JsonGenerator generator, Object value, boolean canonical) throws IOException {
+		if (!canonical) {
+			generator.writeObject(value);
+		}
+		else if (value instanceof Map<?, ?> map) {
+			Map<String, Object> sorted = new TreeMap<>();
+			map.forEach((key, entry) -> sorted.put(String.valueOf(key), entry));
+			generator.writeStartObject();
+			for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+				generator.writeFieldName(entry.getKey());
+				writeValue(generator, entry.getValue(), true);
+			}
+			generator.writeEndObject();
+		}
+		else if (value instanceof Collection<?> collection) {
+			generator.writeStartArray();
+			for (Object element : collection) {
+				writeValue(generator, element, true);
+			}
+			generator.writeEndArray();
+		}
+		else {
+			generator.writeObject(value);
+		}
+	}
+
+	private static void writeString(JsonGenerator generator, SerializableString name, String value) throws IOException {
+		if (value != null) {
+			generator.writeFieldName(name);
+			generator.writeString(value);
+		}
+	}
+
+	private static void writeNumber(JsonGenerator generator, SerializableString name, Double value) throws IOException {
+		if (value != null) {
+			generator.writeFieldName(name);
+			generator.writeNumber(value);
+		}
+	}
+
+	private record Encoded(WeakReference<ChatCompletionRequest> request, Body body) {
+	}
+
+	/**
+	 * The body of a request.
+	 *
+	 * @param content the bytes to send.
+	 * @param contentLength the size of the JSON body, before compression.
+	 * @param contentEncoding the encoding of the content, or null if it is not
+	 * compressed.
+	 * @param acceptCompressed whether compressed responses are accepted.
+	 */
+	record Body(byte[] content, int contentLength, String contentEncoding, boolean acceptCompressed) {
+
+		void writeHeaders(HttpHeaders headers) {
+			if (this.contentEncoding != null) {
+				headers.set(HttpHeaders.CONTENT_ENCODING, this.contentEncoding);
+			}
+			if (this.acceptCompressed) {
+				headers.set(HttpHeaders.ACCEPT_ENCODING, MoonshotCompression.ACCEPT_ENCODING);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springaicommunity.moonshot.api.MoonshotCompression.Encoding;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Decompression of the gzip and deflate response bodies of the {@code RestClient} and
+ * {@code WebClient}, for the HTTP connectors that do not decompress them. The bodies are
+ * decompressed as they are read, so that the streamed responses are not delayed, and
+ * their sizes on the wire and decompressed are recorded in the
+ * {@link MoonshotTransportMetrics}.
+ *
+ * @author agent
+ */
+final class MoonshotResponseDecompression {
+
+	private MoonshotResponseDecompression() {
+	}
+
+	/**
+	 * @return an interceptor decompressing the responses of a {@code RestClient}.
+	 */
+	static ClientHttpRequestInterceptor interceptor(MoonshotTransportMetrics metrics) {
+		return (request, body, execution) -> new DecompressingResponse(execution.execute(request, body), metrics);
+	}
+
+	/**
+	 * @return a filter decompressing the responses of a {@code WebClient}.
+	 */
+	static ExchangeFilterFunction filter(MoonshotTransportMetrics metrics) {
+		return ExchangeFilterFunction.ofResponseProcessor(response -> Mono.just(decompress(response, metrics)));
+	}
+
+	private static ClientResponse decompress(ClientResponse response, MoonshotTransportMetrics metrics) {
+		Encoding encoding = Encoding.from(response.headers().asHttpHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		if (encoding == null) {
+			return response.mutate().body(body -> body.doOnNext(buffer -> {
+				int size = buffer.readableByteCount();
+				metrics.recordResponse(size, size);
+			})).build();
+		}
+		return response.mutate().headers(headers -> {
+			headers.remove(HttpHeaders.CONTENT_ENCODING);
+			headers.remove(HttpHeaders.CONTENT_LENGTH);
+		}).body(body -> inflate(body, encoding, metrics)).build();
+	}
+
+	private static Flux<DataBuffer> inflate(Flux<DataBuffer> body, Encoding encoding,
+			MoonshotTransportMetrics metrics) {
+		return Flux.using(() -> new MoonshotInflater(encoding), inflater -> body.handle((buffer, sink) -> {
+			byte[] compressed = new byte[buffer.readableByteCount()];
+			buffer.read(compressed);
+			DataBufferUtils.release(buffer);
+			try {
+				byte[] inflated = inflater.inflate(compressed, 0, compressed.length);
+				metrics.recordResponse(inflated.length, compressed.length);
+				if (inflated.length > 0) {
+					sink.next(DefaultDataBufferFactory.sharedInstance.wrap(inflated));
+				}
+			}
+			catch (ZipException ex) {
+				sink.error(ex);
+			}
+		}), MoonshotInflater::end);
+	}
+
+	private static final class DecompressingResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final MoonshotTransportMetrics metrics;
+
+		private final Encoding encoding;
+
+		private HttpHeaders headers;
+
+		private InputStream body;
+
+		DecompressingResponse(ClientHttpResponse response, MoonshotTransportMetrics metrics) {
+			this.response = response;
+			this.metrics = metrics;
+			this.encoding = Encoding.from(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		}
+
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return this.response.getStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return this.response.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			if (this.headers == null) {
+				if (this.encoding == null) {
+					this.headers = this.response.getHeaders();
+				}
+				else {
+					HttpHeaders headers = new HttpHeaders();
+					headers.putAll(this.response.getHeaders());
+					headers.remove(HttpHeaders.CONTENT_ENCODING);
+					headers.remove(HttpHeaders.CONTENT_LENGTH);
+					this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+				}
+			}
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (this.body == null) {
+				if (this.encoding == null) {
+					this.body = new CountingInputStream(this.response.getBody(), this.metrics, true, true);
+				}
+				else {
+					InputStream wire = new CountingInputStream(this.response.getBody(), this.metrics, false, true);
+					InputStream inflated = (this.encoding == Encoding.GZIP) ? new GZIPInputStream(wire)
+							: new InflaterInputStream(wire);
+					this.body = new CountingInputStream(inflated, this.metrics, true, false);
+				}
+			}
+			return this.body;
+		}
+
+		@Override
+		public void close() {
+			this.response.close();
+		}
+
+	}
+
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private final MoonshotTransportMetrics metrics;
+
+		private final boolean content;
+
+		private final boolean wire;
+
+		CountingInputStream(InputStream in, MoonshotTransportMetrics metrics, boolean content, boolean wire) {
+			super(in);
+			this.metrics = metrics;
+			this.content = content;
+			this.wire = wire;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if (read >= 0) {
+				record(1);
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if (read > 0) {
+				record(read);
+			}
+			return read;
+		}
+
+		private void record(int read) {
+			this.metrics.recordResponse(this.content ? read : 0, this.wire ? read : 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte-level decoder for the server-sent events returned by the streaming chat
+ * completions endpoint. Lines are framed directly on the raw response bytes and the
+ * payload of each {@code data:} event is handed to the JSON layer as a byte range, so no
+ * intermediate {@link String} is created per event. The {@code [DONE]} sentinel is
+ * matched on bytes as well. Payloads are parsed by a {@link MoonshotChunkParser}.
+ * <p>
+ * A decoder keeps the framing state of a single response and must not be shared between
+ * streams.
+ * </p>
+ *
+ * @author agent
+ */
+public class MoonshotSseDecoder {
+
+	private static final byte[] DATA_FIELD = "data".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] DONE_SENTINEL = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+	private final MoonshotChunkParser chunkParser = new MoonshotChunkParser();
+
+	private byte[] line = new byte[256];
+
+	private int lineLength;
+
+	private byte[] data = new byte[1024];
+
+	private int dataLength;
+
+	private boolean hasData;
+
+	private boolean lastWasCarriageReturn;
+
+	private boolean done;
+
+	/**
+	 * Decode the events completed by the given buffer. The buffer is always released.
+	 * @param buffer the next part of the response body.
+	 * @return the chunks of all events completed by this buffer, possibly empty.
+	 */
+	public List<ChatCompletionChunk> decode(DataBuffer buffer) {
+		try {
+			List<ChatCompletionChunk> chunks = new ArrayList<>(1);
+			try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+				while (iterator.hasNext() && !this.done) {
+					ByteBuffer byteBuffer = iterator.next();
+					while (byteBuffer.hasRemaining() && !this.done) {
+						accept(byteBuffer.get(), chunks);
+					}
+				}
+			}
+			return chunks;
+		}
+		finally {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	/**
+	 * Decode the events completed by the given byte range.
+	 * @param bytes the source array.
+	 * @param offset the offset of the first byte to decode.
+	 * @param length the number of bytes to decode.
+	 * @return the chunks of all events completed by this range, possibly empty.
+	 */
+	public List<ChatCompletionChunk> decode(byte[] bytes, int offset, int length) {
+		List<ChatCompletionChunk> chunks = new ArrayList<>(1);
+		for (int i = offset; i < offset + length && !this.done; i++) {
+			accept(bytes[i], chunks);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Signal the end of the response body, dispatching an event that was not terminated
+	 * by a blank line.
+	 * @return the chunk of the pending event, if any.
+	 */
+	public List<ChatCompletionChunk> complete() {
+		List<ChatCompletionChunk> chunks = new ArrayList<>(1);
+		if (!this.done) {
+			if (this.lineLength > 0) {
+				endLine(chunks);
+			}
+			dispatch(chunks);
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return true once the {@code [DONE]} sentinel has been received. Any input after
+	 * the sentinel is ignored.
+	 */
+	public boolean isDone() {
+		return this.done;
+	}
+
+	private void accept(byte b, List<ChatCompletionChunk> chunks) {
+		if (b == '\n') {
+			if (this.lastWasCarriageReturn) {
+				this.lastWasCarriageReturn = false;
+				return;
+			}
+			endLine(chunks);
+		}
+		else if (b == '\r') {
+			this.lastWasCarriageReturn = true;
+			endLine(chunks);
+		}
+		else {
+			this.lastWasCarriageReturn = false;
+			if (this.lineLength == this.line.length) {
+				this.line = Arrays.copyOf(this.line, this.line.length * 2);
+			}
+			this.line[this.lineLength++] = b;
+		}
+	}
+
+	private void endLine(List<ChatCompletionChunk> chunks) {
+		int length = this.lineLength;
+		this.lineLength = 0;
+		if (length == 0) {
+			dispatch(chunks);
+			return;
+		}
+		if (!startsWith(this.line, length, DATA_FIELD)) {
+			// Comments (keep-alives) and fields other than data are not used by the API.
+			return;
+		}
+		int start = DATA_FIELD.length;
+		if (start == length) {
+			appendData(start, start);
+			return;
+		}
+		if (this.line[start] != ':') {
+			return;
+		}
+		start++;
+		if (start < length && this.line[start] == ' ') {
+			start++;
+		}
+		appendData(start, length);
+	}
+
+	private void appendData(int start, int end) {
+		int required = this.dataLength + (end - start) + 1;
+		if (required > this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(required, this.data.length * 2));
+		}
+		if (this.hasData) {
+			this.data[this.dataLength++] = '\n';
+		}
+		System.arraycopy(this.line, start, this.data, this.dataLength, end - start);
+		this.dataLength += end - start;
+		this.hasData = true;
+	}
+
+	private void dispatch(List<ChatCompletionChunk> chunks) {
+		if (!this.hasData) {
+			return;
+		}
+		int length = this.dataLength;
+		this.dataLength = 0;
+		this.hasData = false;
+		if (length == DONE_SENTINEL.length && startsWith(this.data, length, DONE_SENTINEL)) {
+			this.done = true;
+			return;
+		}
+		if (length == 0) {
+			return;
+		}
+		try {
+			chunks.add(this.chunkParser.parse(this.data, 0, length));
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to decode chat completion chunk: "
+					+ new String(this.data, 0, length, StandardCharsets.UTF_8), ex);
+		}
+	}
+
+	private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+		if (length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionFinishReason;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+
+/**
+ * Fine-grained event of a streamed chat completion. Unlike the merged
+ * {@link MoonshotApi.ChatCompletionChunk} stream, tool calls are reported while they are
+ * streamed and content is never held back behind a tool call window.
+ *
+ * @author agent
+ */
+public sealed interface MoonshotStreamEvent {
+
+	/**
+	 * @return the index of the choice the event belongs to.
+	 */
+	int choiceIndex();
+
+	/**
+	 * A fragment of the assistant message content.
+	 *
+	 * @param choiceIndex the index of the choice.
+	 * @param content the content fragment.
+	 */
+	record ContentDelta(int choiceIndex, String content) implements MoonshotStreamEvent {
+	}
+
+	/**
+	 * The first delta of a tool call was received.
+	 *
+	 * @param choiceIndex the index of the choice.
+	 * @param toolCallIndex the index of the tool call within the choice.
+	 * @param id the ID of the tool call, if already known.
+	 * @param name the name of the function to call, if already known.
+	 */
+	record ToolCallStarted(int choiceIndex, int toolCallIndex, String id, String name) implements MoonshotStreamEvent {
+	}
+
+	/**
+	 * A fragment of the JSON arguments of a tool call.
+	 *
+	 * @param choiceIndex the index of the choice.
+	 * @param toolCallIndex the index of the tool call within the choice.
+	 * @param arguments the arguments fragment.
+	 */
+	record ToolCallArgumentsDelta(int choiceIndex, int toolCallIndex, String arguments) implements MoonshotStreamEvent {
+	}
+
+	/**
+	 * A tool call was fully streamed. It is reported as soon as its arguments form a
+	 * complete JSON object, possibly before the end of the tool call window.
+	 *
+	 * @param choiceIndex the index of the choice.
+	 * @param toolCallIndex the index of the tool call within the choice.
+	 * @param toolCall the assembled tool call.
+	 */
+	record ToolCallCompleted(int choiceIndex, int toolCallIndex, ToolCall toolCall) implements MoonshotStreamEvent {
+	}
+
+	/**
+	 * The token usage of the completion, reported with its last chunk.
+	 *
+	 * @param choiceIndex the index of the choice.
+	 * @param usage the token usage.
+	 */
+	record Usage(int choiceIndex, MoonshotApi.Usage usage) implements MoonshotStreamEvent {
+	}
+
+	/**
+	 * The model stopped generating tokens for a choice.
+	 *
+	 * @param choiceIndex the index of the choice.
+	 * @param finishReason the reason the model stopped.
+	 */
+	record Finish(int choiceIndex, ChatCompletionFinishReason finishReason) implements MoonshotStreamEvent {
+	}
+
+}
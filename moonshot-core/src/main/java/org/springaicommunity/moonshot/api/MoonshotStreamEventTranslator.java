@@ -0,0 +1,173 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk.ChunkChoice;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionFinishReason;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotStreamFunctionCallingHelper.ToolCallAccumulator;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates the raw chunks of a single chat completion stream into
+ * {@link MoonshotStreamEvent}s. The tool calls of each choice are tracked until their
+ * streamed arguments form a complete JSON object, or until the {@code tool_calls} finish
+ * reason or the end of the stream completes them. A translator holds per-stream state and
+ * must not be shared.
+ *
+ * @author agent
+ */
+final class MoonshotStreamEventTranslator {
+
+	private final Map<Integer, List<OpenToolCall>> openToolCalls = new HashMap<>(2);
+
+	/**
+	 * Translate the next chunk of the stream.
+	 * @param chunk the next chunk.
+	 * @return the events carried by the chunk, possibly empty.
+	 */
+	List<MoonshotStreamEvent> translate(ChatCompletionChunk chunk) {
+		if (CollectionUtils.isEmpty(chunk.choices())) {
+			return List.of();
+		}
+		if (chunk.choices().size() == 1 && isContentOnly(chunk.choices().get(0))) {
+			// Fast path for the bulk of the stream: a single content delta.
+			ChunkChoice choice = chunk.choices().get(0);
+			String content = choice.delta().content();
+			return StringUtils.hasLength(content)
+					? List.of(new MoonshotStreamEvent.ContentDelta(choiceIndex(choice), content)) : List.of();
+		}
+		List<MoonshotStreamEvent> events = new ArrayList<>(2);
+		for (ChunkChoice choice : chunk.choices()) {
+			int choiceIndex = choiceIndex(choice);
+			ChatCompletionMessage delta = choice.delta();
+			if (delta != null) {
+				if (StringUtils.hasLength(delta.content())) {
+					events.add(new MoonshotStreamEvent.ContentDelta(choiceIndex, delta.content()));
+				}
+				if (delta.toolCalls() != null) {
+					for (ToolCall toolCall : delta.toolCalls()) {
+						translate(choiceIndex, toolCall, events);
+					}
+				}
+			}
+			if (choice.finishReason() == ChatCompletionFinishReason.TOOL_CALLS) {
+				completeToolCalls(choiceIndex, events);
+			}
+			if (choice.usage() != null) {
+				events.add(new MoonshotStreamEvent.Usage(choiceIndex, choice.usage()));
+			}
+			if (choice.finishReason() != null) {
+				events.add(new MoonshotStreamEvent.Finish(choiceIndex, choice.finishReason()));
+			}
+		}
+		return events;
+	}
+
+	private static boolean isContentOnly(ChunkChoice choice) {
+		return choice.delta() != null && choice.delta().toolCalls() == null && choice.finishReason() == null
+				&& choice.usage() == null;
+	}
+
+	private static int choiceIndex(ChunkChoice choice) {
+		return (choice.index() != null ? choice.index() : 0);
+	}
+
+	/**
+	 * Complete the tool calls left open at the end of the stream.
+	 * @return the completion events, possibly empty.
+	 */
+	List<MoonshotStreamEvent> complete() {
+		if (this.openToolCalls.isEmpty()) {
+			return List.of();
+		}
+		List<MoonshotStreamEvent> events = new ArrayList<>();
+		for (Integer choiceIndex : new ArrayList<>(this.openToolCalls.keySet())) {
+			completeToolCalls(choiceIndex, events);
+		}
+		return events;
+	}
+
+	private void translate(int choiceIndex, ToolCall delta, List<MoonshotStreamEvent> events) {
+		List<OpenToolCall> toolCalls = this.openToolCalls.computeIfAbsent(choiceIndex, key -> new ArrayList<>(1));
+		OpenToolCall toolCall = find(toolCalls, delta);
+		boolean started = (toolCall == null);
+		if (started) {
+			int toolCallIndex = (delta.index() != null ? delta.index() : toolCalls.size());
+			toolCall = new OpenToolCall(toolCallIndex, new ToolCallAccumulator(delta.index()),
+					new JsonCompletenessTracker());
+			toolCalls.add(toolCall);
+		}
+		toolCall.accumulator.add(delta);
+		if (started) {
+			ToolCall current = toolCall.accumulator.build();
+			events.add(new MoonshotStreamEvent.ToolCallStarted(choiceIndex, toolCall.index, current.id(),
+					current.function() != null ? current.function().name() : null));
+		}
+		if (delta.function() != null && StringUtils.hasLength(delta.function().arguments())) {
+			events.add(new MoonshotStreamEvent.ToolCallArgumentsDelta(choiceIndex, toolCall.index,
+					delta.function().arguments()));
+			if (!toolCall.arguments.isComplete() && toolCall.arguments.append(delta.function().arguments())) {
+				events.add(new MoonshotStreamEvent.ToolCallCompleted(choiceIndex, toolCall.index,
+						toolCall.accumulator.build()));
+			}
+		}
+	}
+
+	/**
+	 * Same matching rules as the chunk merge: by index when the delta carries one,
+	 * otherwise a delta with an ID starts a new tool call and any other continues the
+	 * last one.
+	 */
+	private static OpenToolCall find(List<OpenToolCall> toolCalls, ToolCall delta) {
+		if (delta.index() != null) {
+			for (OpenToolCall toolCall : toolCalls) {
+				if (toolCall.index == delta.index()) {
+					return toolCall;
+				}
+			}
+			return null;
+		}
+		return (delta.id() == null && !toolCalls.isEmpty() ? toolCalls.get(toolCalls.size() - 1) : null);
+	}
+
+	private void completeToolCalls(int choiceIndex, List<MoonshotStreamEvent> events) {
+		List<OpenToolCall> toolCalls = this.openToolCalls.remove(choiceIndex);
+		if (toolCalls == null) {
+			return;
+		}
+		for (OpenToolCall toolCall : toolCalls) {
+			if (toolCall.arguments.isComplete()) {
+				continue;
+			}
+			events.add(new MoonshotStreamEvent.ToolCallCompleted(choiceIndex, toolCall.index,
+					toolCall.accumulator.build()));
+		}
+	}
+
+	private record OpenToolCall(int index, ToolCallAccumulator accumulator, JsonCompletenessTracker arguments) {
+	}
+
+}
@@ -24,9 +24,16 @@ import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Chat
 import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
 import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
 import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * Helper class to support Streaming function calling. It can merge the streamed
@@ -36,6 +43,16 @@ import java.util.List;
  */
 public class MoonshotStreamFunctionCallingHelper {
 
+	/**
+	 * Merge two chunks of a tool call window. The merged arguments are copied on each
+	 * call, so folding a window with this method takes quadratic time in its length.
+	 * @param previous the chunk merged so far, or null.
+	 * @param current the next chunk.
+	 * @return the merged chunk.
+	 * @deprecated in favor of {@link #accumulator()}, which appends the deltas in
+	 * amortized constant time, or {@link #mergeToolCallWindows(Flux)} for a whole stream.
+	 */
+	@Deprecated
 	public ChatCompletionChunk merge(ChatCompletionChunk previous, ChatCompletionChunk current) {
 
 		if (previous == null) {
@@ -47,14 +64,38 @@ public class MoonshotStreamFunctionCallingHelper {
 		String model = (current.model() != null ? current.model() : previous.model());
 		String object = (current.object() != null ? current.object() : previous.object());
 
-		ChunkChoice previousChoice0 = (CollectionUtils.isEmpty(previous.choices()) ? null : previous.choices().get(0));
-		ChunkChoice currentChoice0 = (CollectionUtils.isEmpty(current.choices()) ? null : current.choices().get(0));
+		List<ChunkChoice> previousChoices = (previous.choices() != null ? previous.choices() : List.of());
+		List<ChunkChoice> currentChoices = (current.choices() != null ? current.choices() : List.of());
+		if (previousChoices.size() <= 1 && currentChoices.size() <= 1) {
+			ChunkChoice choice = merge(previousChoices.isEmpty() ? null : previousChoices.get(0),
+					currentChoices.isEmpty() ? null : currentChoices.get(0));
+			List<ChunkChoice> chunkChoices = choice == null ? List.of() : List.of(choice);
+			return new ChatCompletionChunk(id, object, created, model, chunkChoices);
+		}
 
-		ChunkChoice choice = merge(previousChoice0, currentChoice0);
-		List<ChunkChoice> chunkChoices = choice == null ? List.of() : List.of(choice);
+		// Several candidates (n > 1): merge the choices sharing the same index.
+		List<ChunkChoice> chunkChoices = new ArrayList<>(previousChoices);
+		for (ChunkChoice currentChoice : currentChoices) {
+			int position = indexOfChoice(chunkChoices, currentChoice.index());
+			if (position < 0) {
+				chunkChoices.add(currentChoice);
+			}
+			else {
+				chunkChoices.set(position, merge(chunkChoices.get(position), currentChoice));
+			}
+		}
 		return new ChatCompletionChunk(id, object, created, model, chunkChoices);
 	}
 
+	private static int indexOfChoice(List<ChunkChoice> choices, Integer index) {
+		for (int i = 0; i < choices.size(); i++) {
+			if (Objects.equals(choices.get(i).index(), index)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	private ChunkChoice merge(ChunkChoice previous, ChunkChoice current) {
 		if (previous == null) {
 			return current;
@@ -78,32 +119,17 @@ public class MoonshotStreamFunctionCallingHelper {
 		String name = (current.name() != null ? current.name() : previous.name());
 		String toolCallId = (current.toolCallId() != null ? current.toolCallId() : previous.toolCallId());
 
-		List<ToolCall> toolCalls = new ArrayList<>();
-		ToolCall lastPreviousTooCall = null;
-		if (previous.toolCalls() != null) {
-			lastPreviousTooCall = previous.toolCalls().get(previous.toolCalls().size() - 1);
-			if (previous.toolCalls().size() > 1) {
-				toolCalls.addAll(previous.toolCalls().subList(0, previous.toolCalls().size() - 1));
-			}
-		}
+		List<ToolCall> toolCalls = (previous.toolCalls() != null ? new ArrayList<>(previous.toolCalls())
+				: new ArrayList<>());
 		if (current.toolCalls() != null) {
-			if (current.toolCalls().size() > 1) {
-				throw new IllegalStateException("Currently only one tool call is supported per message!");
-			}
-			var currentToolCall = current.toolCalls().iterator().next();
-			if (currentToolCall.id() != null) {
-				if (lastPreviousTooCall != null) {
-					toolCalls.add(lastPreviousTooCall);
+			for (ToolCall currentToolCall : current.toolCalls()) {
+				int position = indexOfToolCall(toolCalls, currentToolCall);
+				if (position < 0) {
+					toolCalls.add(currentToolCall);
+				}
+				else {
+					toolCalls.set(position, merge(toolCalls.get(position), currentToolCall));
 				}
-				toolCalls.add(currentToolCall);
-			}
-			else {
-				toolCalls.add(merge(lastPreviousTooCall, currentToolCall));
-			}
-		}
-		else {
-			if (lastPreviousTooCall != null) {
-				toolCalls.add(lastPreviousTooCall);
 			}
 		}
 		return new ChatCompletionMessage(content, role, name, toolCallId, toolCalls);
@@ -116,7 +142,27 @@ public class MoonshotStreamFunctionCallingHelper {
 		String id = (current.id() != null ? current.id() : previous.id());
 		String type = (current.type() != null ? current.type() : previous.type());
 		ChatCompletionFunction function = merge(previous.function(), current.function());
-		return new ToolCall(id, type, function);
+		Integer index = (current.index() != null ? current.index() : previous.index());
+		return new ToolCall(id, type, function, index);
+	}
+
+	/**
+	 * Find the position of the tool call a streamed delta belongs to. Deltas carrying an
+	 * index are matched by index, so that several tool calls can be streamed in parallel.
+	 * Without an index, a delta with an ID starts a new tool call and any other delta
+	 * continues the last one.
+	 * @return the position of the matching tool call or -1 if the delta starts a new one.
+	 */
+	private static int indexOfToolCall(List<ToolCall> toolCalls, ToolCall delta) {
+		if (delta.index() != null) {
+			for (int i = 0; i < toolCalls.size(); i++) {
+				if (delta.index().equals(toolCalls.get(i).index())) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		return (delta.id() != null ? -1 : toolCalls.size() - 1);
 	}
 
 	private ChatCompletionFunction merge(ChatCompletionFunction previous, ChatCompletionFunction current) {
@@ -134,6 +180,85 @@ public class MoonshotStreamFunctionCallingHelper {
 		return new ChatCompletionFunction(name, arguments.toString());
 	}
 
+	/**
+	 * Split the chunks carrying several choices into one chunk per choice, so that each
+	 * chunk belongs to a single candidate of an {@code n > 1} request.
+	 * @param chunks the decoded chunks.
+	 * @return the given list if every chunk carries at most one choice, the split chunks
+	 * otherwise.
+	 */
+	public List<ChatCompletionChunk> splitChoices(List<ChatCompletionChunk> chunks) {
+		boolean single = true;
+		for (ChatCompletionChunk chunk : chunks) {
+			if (chunk.choices() != null && chunk.choices().size() > 1) {
+				single = false;
+				break;
+			}
+		}
+		if (single) {
+			return chunks;
+		}
+		List<ChatCompletionChunk> split = new ArrayList<>(chunks.size() * 2);
+		for (ChatCompletionChunk chunk : chunks) {
+			if (chunk.choices() == null || chunk.choices().size() <= 1) {
+				split.add(chunk);
+				continue;
+			}
+			for (ChunkChoice choice : chunk.choices()) {
+				split.add(new ChatCompletionChunk(chunk.id(), chunk.object(), chunk.created(), chunk.model(),
+						List.of(choice)));
+			}
+		}
+		return split;
+	}
+
+	/**
+	 * Demultiplex the chunks of a stream per choice index. Chunks must carry a single
+	 * choice, see {@link #splitChoices(List)}. Every group must be consumed for the
+	 * stream to make progress.
+	 * @param chunks the chunks of a chat completion stream.
+	 * @return one ordered sub-stream per choice index.
+	 */
+	public Flux<GroupedFlux<Integer, ChatCompletionChunk>> groupByChoice(Flux<ChatCompletionChunk> chunks) {
+		return chunks.groupBy(MoonshotStreamFunctionCallingHelper::choiceIndex);
+	}
+
+	static int choiceIndex(ChatCompletionChunk chunk) {
+		if (CollectionUtils.isEmpty(chunk.choices())) {
+			return 0;
+		}
+		Integer index = chunk.choices().get(0).index();
+		return (index != null ? index : 0);
+	}
+
+	/**
+	 * Create a new accumulator to merge the chunks of a single tool call window.
+	 * @return a new, empty accumulator.
+	 */
+	public ChunkAccumulator accumulator() {
+		return new ChunkAccumulator();
+	}
+
+	/**
+	 * Create the state used to merge the tool call windows of a single stream.
+	 * @return a new window merger.
+	 */
+	public WindowMerger windowMerger() {
+		return new WindowMerger(this);
+	}
+
+	/**
+	 * Merge the chunks of every tool call window of the given stream into a single chunk,
+	 * in place and with a single operator. Chunks outside of tool call windows are passed
+	 * through as is. The merge state is created per subscriber, so the returned
+	 * {@link Flux} can be subscribed to several times.
+	 * @param chunks the chunks of a chat completion stream.
+	 * @return the stream with merged tool call windows.
+	 */
+	public Flux<ChatCompletionChunk> mergeToolCallWindows(Flux<ChatCompletionChunk> chunks) {
+		return new MoonshotChunkMergeOperator(chunks, this);
+	}
+
 	/**
 	 * @param chatCompletion the ChatCompletionChunk to check
 	 * @return true if the ChatCompletionChunk is a streaming tool function call.
@@ -169,4 +294,303 @@ public class MoonshotStreamFunctionCallingHelper {
 		return choice.finishReason() == ChatCompletionFinishReason.TOOL_CALLS;
 	}
 
+	/**
+	 * Translate the chunks of the given stream into {@link MoonshotStreamEvent}s. The
+	 * translation state is created per subscriber, so the returned {@link Flux} can be
+	 * subscribed to several times.
+	 * @param chunks the raw chunks of a chat completion stream.
+	 * @return the stream of events.
+	 */
+	public Flux<MoonshotStreamEvent> toStreamEvents(Flux<ChatCompletionChunk> chunks) {
+		return Flux.defer(() -> {
+			MoonshotStreamEventTranslator translator = new MoonshotStreamEventTranslator();
+			return chunks.concatMapIterable(translator::translate)
+				.concatWith(Flux.defer(() -> Flux.fromIterable(translator.complete())));
+		});
+	}
+
+	/**
+	 * Observe the chunks of the given stream as {@link MoonshotStreamEvent}s while
+	 * relaying them unchanged. The translation state is created per subscriber.
+	 * @param chunks the raw chunks of a chat completion stream.
+	 * @param eventListener the listener notified of each event, on the thread delivering
+	 * the chunks.
+	 * @return the same stream of chunks.
+	 */
+	public Flux<ChatCompletionChunk> observeStreamEvents(Flux<ChatCompletionChunk> chunks,
+			Consumer<MoonshotStreamEvent> eventListener) {
+		return Flux.defer(() -> {
+			MoonshotStreamEventTranslator translator = new MoonshotStreamEventTranslator();
+			return chunks.doOnNext(chunk -> translator.translate(chunk).forEach(eventListener))
+				.doOnComplete(() -> translator.complete().forEach(eventListener));
+		});
+	}
+
+	/**
+	 * Merge state of a single stream. Chunks are passed one at a time: those outside of a
+	 * tool call window are returned as is, those inside are accumulated until the window
+	 * closes with the {@code tool_calls} finish reason. Content streamed inside a window
+	 * is not held back, it is returned right away as a content only chunk. Each choice
+	 * index has its own window, chunks are expected to carry a single choice.
+	 */
+	public static final class WindowMerger {
+
+		private final MoonshotStreamFunctionCallingHelper helper;
+
+		private final Map<Integer, ChunkAccumulator> windows = new LinkedHashMap<>(2);
+
+		private WindowMerger(MoonshotStreamFunctionCallingHelper helper) {
+			this.helper = helper;
+		}
+
+		/**
+		 * Process the next chunk of the stream.
+		 * @param chunk the next chunk.
+		 * @return the chunk to emit, or null if the chunk was buffered in the current
+		 * tool call window.
+		 */
+		public ChatCompletionChunk next(ChatCompletionChunk chunk) {
+			if (this.windows.isEmpty() && !this.helper.isStreamingToolFunctionCall(chunk)) {
+				return chunk;
+			}
+			Integer choiceIndex = choiceIndex(chunk);
+			ChunkAccumulator window = this.windows.get(choiceIndex);
+			if (window == null) {
+				if (!this.helper.isStreamingToolFunctionCall(chunk)) {
+					return chunk;
+				}
+				window = this.helper.accumulator();
+				this.windows.put(choiceIndex, window);
+			}
+			window.add(chunk);
+			if (this.helper.isStreamingToolFunctionCallFinish(chunk)) {
+				this.windows.remove(choiceIndex);
+				return window.build();
+			}
+			// Relay the content streamed alongside the tool calls right away.
+			return window.takeContent();
+		}
+
+		/**
+		 * Close one of the tool call windows still open, in the order they were opened.
+		 * Call repeatedly until it returns null to close all of them.
+		 * @return the merged chunk of an open window, or null if there is none.
+		 */
+		public ChatCompletionChunk complete() {
+			Iterator<ChunkAccumulator> windows = this.windows.values().iterator();
+			if (!windows.hasNext()) {
+				return null;
+			}
+			ChunkAccumulator window = windows.next();
+			windows.remove();
+			return window.build();
+		}
+
+	}
+
+	/**
+	 * Mutable accumulator for the chunks of a single tool call window. Any number of tool
+	 * calls can be streamed in parallel, each one is assembled independently from the
+	 * deltas carrying its index. Unlike
+	 * {@link #merge(ChatCompletionChunk, ChatCompletionChunk)}, which copies the
+	 * previously merged arguments on every call, deltas are appended in amortized
+	 * constant time and the immutable records are only materialized once, by
+	 * {@link #build()}.
+	 */
+	public static final class ChunkAccumulator {
+
+		private ChatCompletionChunk first;
+
+		private int count;
+
+		private String id;
+
+		private String object;
+
+		private Long created;
+
+		private String model;
+
+		private boolean hasChoice;
+
+		private Integer index;
+
+		private boolean contentTaken;
+
+		private ChatCompletionFinishReason finishReason;
+
+		private MoonshotApi.Usage usage;
+
+		private StringBuilder content;
+
+		private Role role;
+
+		private String name;
+
+		private String toolCallId;
+
+		private final List<ToolCallAccumulator> toolCalls = new ArrayList<>();
+
+		private ChunkAccumulator() {
+		}
+
+		/**
+		 * Append the given chunk to the window.
+		 * @param chunk the next chunk of the window.
+		 * @return this accumulator.
+		 */
+		public ChunkAccumulator add(ChatCompletionChunk chunk) {
+			if (this.count++ == 0) {
+				this.first = chunk;
+			}
+			this.id = (chunk.id() != null ? chunk.id() : this.id);
+			this.object = (chunk.object() != null ? chunk.object() : this.object);
+			this.created = (chunk.created() != null ? chunk.created() : this.created);
+			this.model = (chunk.model() != null ? chunk.model() : this.model);
+			if (!CollectionUtils.isEmpty(chunk.choices())) {
+				add(chunk.choices().get(0));
+			}
+			return this;
+		}
+
+		private void add(ChunkChoice choice) {
+			this.hasChoice = true;
+			this.index = (choice.index() != null ? choice.index() : this.index);
+			this.finishReason = (choice.finishReason() != null ? choice.finishReason() : this.finishReason);
+			this.usage = (choice.usage() != null ? choice.usage() : this.usage);
+			ChatCompletionMessage delta = choice.delta();
+			if (delta == null) {
+				return;
+			}
+			if (delta.content() != null) {
+				if (this.content == null) {
+					this.content = new StringBuilder();
+				}
+				this.content.append(delta.content());
+			}
+			this.role = (delta.role() != null ? delta.role() : this.role);
+			this.name = (delta.name() != null ? delta.name() : this.name);
+			this.toolCallId = (delta.toolCallId() != null ? delta.toolCallId() : this.toolCallId);
+			if (delta.toolCalls() != null) {
+				for (ToolCall toolCall : delta.toolCalls()) {
+					toolCallAccumulator(toolCall).add(toolCall);
+				}
+			}
+		}
+
+		/**
+		 * Find the accumulator of the tool call the given delta belongs to, creating it
+		 * if the delta starts a new tool call. Tool calls are kept in the order of their
+		 * first delta.
+		 */
+		private ToolCallAccumulator toolCallAccumulator(ToolCall delta) {
+			if (delta.index() != null) {
+				for (ToolCallAccumulator toolCall : this.toolCalls) {
+					if (delta.index().equals(toolCall.index)) {
+						return toolCall;
+					}
+				}
+			}
+			else if (delta.id() == null && !this.toolCalls.isEmpty()) {
+				return this.toolCalls.get(this.toolCalls.size() - 1);
+			}
+			ToolCallAccumulator toolCall = new ToolCallAccumulator(delta.index());
+			this.toolCalls.add(toolCall);
+			return toolCall;
+		}
+
+		/**
+		 * Remove the content accumulated so far from the window.
+		 * @return a content only chunk holding the removed content, or null if there is
+		 * no pending content.
+		 */
+		public ChatCompletionChunk takeContent() {
+			if (this.content == null || this.content.length() == 0) {
+				return null;
+			}
+			String content = this.content.toString();
+			this.content.setLength(0);
+			this.contentTaken = true;
+			ChatCompletionMessage message = new ChatCompletionMessage(content,
+					this.role != null ? this.role : Role.ASSISTANT);
+			return new ChatCompletionChunk(this.id, this.object, this.created, this.model,
+					List.of(new ChunkChoice(this.index, message, null, null)));
+		}
+
+		/**
+		 * @return true if no chunk was added to this accumulator.
+		 */
+		public boolean isEmpty() {
+			return this.count == 0;
+		}
+
+		/**
+		 * Materialize the merged chunk of the window. A window made of a single chunk
+		 * returns that chunk as is, unless its content was taken.
+		 * @return the merged chunk.
+		 */
+		public ChatCompletionChunk build() {
+			if (this.count == 1 && !this.contentTaken) {
+				return this.first;
+			}
+			List<ChunkChoice> choices = List.of();
+			if (this.hasChoice) {
+				List<ToolCall> mergedToolCalls = new ArrayList<>(this.toolCalls.size());
+				for (ToolCallAccumulator toolCall : this.toolCalls) {
+					mergedToolCalls.add(toolCall.build());
+				}
+				ChatCompletionMessage message = new ChatCompletionMessage(
+						this.content != null ? this.content.toString() : "",
+						this.role != null ? this.role : Role.ASSISTANT, this.name, this.toolCallId, mergedToolCalls);
+				choices = List.of(new ChunkChoice(this.index, message, this.finishReason, this.usage));
+			}
+			return new ChatCompletionChunk(this.id, this.object, this.created, this.model, choices);
+		}
+
+	}
+
+	static final class ToolCallAccumulator {
+
+		private final Integer index;
+
+		private String id;
+
+		private String type;
+
+		private String name;
+
+		private StringBuilder arguments;
+
+		private boolean hasFunction;
+
+		ToolCallAccumulator(Integer index) {
+			this.index = index;
+		}
+
+		void add(ToolCall toolCall) {
+			this.id = (toolCall.id() != null ? toolCall.id() : this.id);
+			this.type = (toolCall.type() != null ? toolCall.type() : this.type);
+			ChatCompletionFunction function = toolCall.function();
+			if (function == null) {
+				return;
+			}
+			this.hasFunction = true;
+			this.name = (function.name() != null ? function.name() : this.name);
+			if (function.arguments() != null) {
+				if (this.arguments == null) {
+					this.arguments = new StringBuilder(function.arguments().length() * 4);
+				}
+				this.arguments.append(function.arguments());
+			}
+		}
+
+		ToolCall build() {
+			ChatCompletionFunction function = this.hasFunction
+					? new ChatCompletionFunction(this.name, this.arguments != null ? this.arguments.toString() : null)
+					: null;
+			return new ToolCall(this.id, this.type, function, this.index);
+		}
+
+	}
+
 }
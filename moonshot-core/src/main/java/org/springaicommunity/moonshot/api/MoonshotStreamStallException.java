@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import java.time.Duration;
+
+/**
+ * Signals that a chat completion stream was aborted because the Moonshot API stopped
+ * sending chunks for longer than allowed by the {@link MoonshotStreamWatchdog}.
+ *
+ * @author agent
+ */
+public class MoonshotStreamStallException extends RuntimeException {
+
+	private final boolean firstChunk;
+
+	private final Duration timeout;
+
+	/**
+	 * Create a new stall exception.
+	 * @param firstChunk true if the stream stalled before its first chunk.
+	 * @param timeout the timeout that elapsed.
+	 */
+	public MoonshotStreamStallException(boolean firstChunk, Duration timeout) {
+		super((firstChunk ? "No chunk received within " : "No further chunk received within ") + timeout);
+		this.firstChunk = firstChunk;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @return true if the stream stalled before its first chunk, in which case nothing
+	 * was emitted and the request can safely be reissued.
+	 */
+	public boolean isFirstChunk() {
+		return this.firstChunk;
+	}
+
+	/**
+	 * @return the timeout that elapsed.
+	 */
+	public Duration getTimeout() {
+		return this.timeout;
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * Stall detection settings of the chat completion streams. A stream that produces no
+ * chunk within the first chunk timeout, or no further chunk within the idle timeout, is
+ * cancelled, which aborts the HTTP exchange, and fails with a
+ * {@link MoonshotStreamStallException}. A stream that stalls before its first chunk has
+ * not emitted anything yet, so it is transparently reissued up to the given number of
+ * times.
+ *
+ * @param firstChunkTimeout the maximum time to wait for the first chunk, or null to wait
+ * indefinitely.
+ * @param idleTimeout the maximum time to wait between two chunks, or null to wait
+ * indefinitely.
+ * @param maxRetries the number of times a stream stalled before its first chunk is
+ * reissued.
+ * @author agent
+ */
+public record MoonshotStreamWatchdog(Duration firstChunkTimeout, Duration idleTimeout, int maxRetries) {
+
+	public MoonshotStreamWatchdog {
+		Assert.isTrue(firstChunkTimeout == null || isPositive(firstChunkTimeout), "firstChunkTimeout must be positive");
+		Assert.isTrue(idleTimeout == null || isPositive(idleTimeout), "idleTimeout must be positive");
+		Assert.isTrue(maxRetries >= 0, "maxRetries must not be negative");
+	}
+
+	/**
+	 * Create a watchdog applying the same timeout to the first chunk and between chunks,
+	 * without retry.
+	 * @param timeout the maximum time to wait for a chunk.
+	 * @return the watchdog.
+	 */
+	public static MoonshotStreamWatchdog of(Duration timeout) {
+		return new MoonshotStreamWatchdog(timeout, timeout, 0);
+	}
+
+	private static boolean isPositive(Duration duration) {
+		return !duration.isNegative() && !duration.isZero();
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte counts of the chat completion exchanges of a {@link MoonshotApi}, before and after
+ * compression. The savings of the compression are the difference between the content and
+ * the wire sizes.
+ *
+ * @author agent
+ */
+public final class MoonshotTransportMetrics {
+
+	private final LongAdder requestBytes = new LongAdder();
+
+	private final LongAdder requestWireBytes = new LongAdder();
+
+	private final LongAdder responseBytes = new LongAdder();
+
+	private final LongAdder responseWireBytes = new LongAdder();
+
+	/**
+	 * @return the size of the request bodies sent, before compression.
+	 */
+	public long getRequestBytes() {
+		return this.requestBytes.sum();
+	}
+
+	/**
+	 * @return the size of the request bodies sent, as sent on the wire.
+	 */
+	public long getRequestWireBytes() {
+		return this.requestWireBytes.sum();
+	}
+
+	/**
+	 * @return the size of the response bodies read, after decompression.
+	 */
+	public long getResponseBytes() {
+		return this.responseBytes.sum();
+	}
+
+	/**
+	 * @return the size of the response bodies read, as received on the wire.
+	 */
+	public long getResponseWireBytes() {
+		return this.responseWireBytes.sum();
+	}
+
+	void recordRequest(long bytes, long wireBytes) {
+		this.requestBytes.add(bytes);
+		this.requestWireBytes.add(wireBytes);
+	}
+
+	void recordResponse(long bytes, long wireBytes) {
+		this.responseBytes.add(bytes);
+		this.responseWireBytes.add(wireBytes);
+	}
+
+	@Override
+	public String toString() {
+		return "MoonshotTransportMetrics{requestBytes=" + getRequestBytes() + ", requestWireBytes="
+				+ getRequestWireBytes() + ", responseBytes=" + getResponseBytes() + ", responseWireBytes="
+				+ getResponseWireBytes() + "}";
+	}
+
+}
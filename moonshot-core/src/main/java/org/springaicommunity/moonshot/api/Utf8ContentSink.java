@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base {@link MoonshotContentSink} encoding each delta to UTF-8 into a single reusable
+ * buffer. The encoder spans the deltas: a high surrogate ending a delta is held back
+ * until the low surrogate starting the next one, and the encoder is only flushed when the
+ * content is complete. Malformed input is replaced, as {@link String#getBytes} does.
+ *
+ * @author agent
+ */
+abstract class Utf8ContentSink implements MoonshotContentSink {
+
+	private static final int BUFFER_SIZE = 1024;
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+		.onMalformedInput(CodingErrorAction.REPLACE)
+		.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/**
+	 * The high surrogate ending the last delta, or 0.
+	 */
+	private char highSurrogate;
+
+	@Override
+	public void write(String delta) throws IOException {
+		CharBuffer chars = CharBuffer.wrap((this.highSurrogate != 0) ? this.highSurrogate + delta : delta);
+		this.highSurrogate = 0;
+		encode(chars, false);
+		if (chars.hasRemaining()) {
+			// The encoder leaves a trailing high surrogate for the next delta.
+			this.highSurrogate = chars.get();
+		}
+		drain();
+	}
+
+	@Override
+	public void complete() throws IOException {
+		// A high surrogate left alone is malformed, it is replaced.
+		encode(CharBuffer.wrap((this.highSurrogate != 0) ? String.valueOf(this.highSurrogate) : ""), true);
+		this.highSurrogate = 0;
+		while (this.encoder.flush(this.buffer).isOverflow()) {
+			drain();
+		}
+		drain();
+		this.encoder.reset();
+		flush();
+	}
+
+	private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+		CoderResult result;
+		do {
+			result = this.encoder.encode(chars, this.buffer, endOfInput);
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (result.isOverflow()) {
+				drain();
+			}
+		}
+		while (result.isOverflow());
+	}
+
+	private void drain() throws IOException {
+		this.buffer.flip();
+		if (this.buffer.hasRemaining()) {
+			write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * Write the encoded bytes.
+	 * @param bytes the buffer holding the bytes, between its position and limit.
+	 * @throws IOException if the bytes could not be written.
+	 */
+	protected abstract void write(ByteBuffer bytes) throws IOException;
+
+}
@@ -19,6 +19,15 @@ package org.springaicommunity.moonshot;
 import org.junit.jupiter.api.Test;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springaicommunity.moonshot.api.MoonshotApi;
+import org.springaicommunity.moonshot.api.MoonshotApi.ResponseFormat;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -56,4 +65,120 @@ public class MoonshotChatCompletionRequestTest {
 		assertThat(request.temperature()).isEqualTo(99.9D);
 	}
 
+	@Test
+	public void createRequestWithResponseFormat() {
+
+		var client = MoonshotChatModel.builder()
+			.moonshotApi(MoonshotApi.builder().apiKey("TEST").build())
+			.defaultOptions(MoonshotChatOptions.builder()
+				.model("DEFAULT_MODEL")
+				.responseFormat(new ResponseFormat(ResponseFormat.Type.JSON_OBJECT))
+				.build())
+			.build();
+
+		var request = client.createRequest(client.buildRequestPrompt(new Prompt("Test message content")), true);
+
+		assertThat(request.responseFormat()).isEqualTo(new ResponseFormat(ResponseFormat.Type.JSON_OBJECT));
+		assertThat(ModelOptionsUtils.toJsonString(request)).contains("\"response_format\":{\"type\":\"json_object\"}");
+	}
+
+	@Test
+	public void readResponseFormatTypeLeniently() {
+		assertThat(ModelOptionsUtils.jsonToObject("{\"type\":\"json_object\"}", ResponseFormat.class).type())
+			.isEqualTo(ResponseFormat.Type.JSON_OBJECT);
+		assertThat(ModelOptionsUtils.jsonToObject("{\"type\":\"json\"}", ResponseFormat.class).type())
+			.isEqualTo(ResponseFormat.Type.JSON_OBJECT);
+		assertThat(ResponseFormat.Type.from("TEXT")).isEqualTo(ResponseFormat.Type.TEXT);
+	}
+
+	@Test
+	public void mergeOptionsLikeModelOptionsUtils() {
+		var defaults = MoonshotChatOptions.builder()
+			.model("DEFAULT_MODEL")
+			.maxTokens(100)
+			.temperature(0.5)
+			.topP(0.9)
+			.N(2)
+			.presencePenalty(0.1)
+			.frequencyPenalty(0.2)
+			.stop(List.of("END"))
+			.toolChoice("auto")
+			.user("user")
+			.responseFormat(new ResponseFormat(ResponseFormat.Type.JSON_OBJECT))
+			.build();
+		var runtime = MoonshotChatOptions.builder()
+			.model("PROMPT_MODEL")
+			.temperature(0.8)
+			.stop(List.of("STOP"))
+			.build();
+
+		assertThat(MoonshotChatOptions.merge(runtime, defaults))
+			.isEqualTo(ModelOptionsUtils.merge(runtime, defaults, MoonshotChatOptions.class));
+		assertThat(MoonshotChatOptions.merge(null, defaults))
+			.isEqualTo(ModelOptionsUtils.merge(null, defaults, MoonshotChatOptions.class));
+
+		var portable = ToolCallingChatOptions.builder()
+			.model("PORTABLE_MODEL")
+			.temperature(0.3)
+			.maxTokens(10)
+			.stopSequences(List.of("STOP"))
+			.toolNames("weather")
+			.internalToolExecutionEnabled(false)
+			.build();
+
+		assertThat(MoonshotChatOptions.fromChatOptions(portable)).isEqualTo(
+				ModelOptionsUtils.copyToTarget(portable, ToolCallingChatOptions.class, MoonshotChatOptions.class));
+		assertThat(MoonshotChatOptions.fromChatOptions(runtime)).isSameAs(runtime);
+	}
+
+	@Test
+	public void createRequestLikeModelOptionsUtils() {
+		var client = MoonshotChatModel.builder().moonshotApi(MoonshotApi.builder().apiKey("TEST").build()).build();
+		var options = MoonshotChatOptions.builder()
+			.model("PROMPT_MODEL")
+			.maxTokens(100)
+			.N(1)
+			.stop(List.of("END"))
+			.toolChoice("none")
+			.user("user")
+			.build();
+		var messages = List.of(new ChatCompletionMessage("Test message content", ChatCompletionMessage.Role.USER));
+
+		assertThat(client.createRequest(new Prompt("Test message content", options), true)).isEqualTo(ModelOptionsUtils
+			.merge(options, new ChatCompletionRequest(messages, true), ChatCompletionRequest.class));
+	}
+
+	@Test
+	public void reuseFunctionToolsOfSameToolDefinitions() {
+		var client = MoonshotChatModel.builder().moonshotApi(MoonshotApi.builder().apiKey("TEST").build()).build();
+		ToolCallback weather = new ToolCallback() {
+
+			@Override
+			public ToolDefinition getToolDefinition() {
+				return ToolDefinition.builder()
+					.name("weather")
+					.description("Get the weather")
+					.inputSchema("{\"type\":\"object\",\"properties\":{}}")
+					.build();
+			}
+
+			@Override
+			public String call(String toolInput) {
+				return "sunny";
+			}
+
+		};
+
+		var first = client.createRequest(client.buildRequestPrompt(
+				new Prompt("Test message content", MoonshotChatOptions.builder().toolCallbacks(weather).build())),
+				true);
+		var second = client.createRequest(client.buildRequestPrompt(
+				new Prompt("Other message content", MoonshotChatOptions.builder().toolCallbacks(weather).build())),
+				true);
+
+		assertThat(first.tools()).hasSize(1).isSameAs(second.tools());
+		assertThat(ModelOptionsUtils.toJsonString(first.tools()))
+			.contains("\"parameters\":{\"type\":\"object\",\"properties\":{}}");
+	}
+
 }
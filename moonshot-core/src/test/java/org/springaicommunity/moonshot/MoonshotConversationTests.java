@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotConversationTests {
+
+	private final List<Message> converted = new ArrayList<>();
+
+	private final MoonshotConversation conversation = new MoonshotConversation((message, latest, messages) -> {
+		this.converted.add(message);
+		messages.add(new ChatCompletionMessage(message.getText(), Role.valueOf(message.getMessageType().name())));
+	}, false);
+
+	@Test
+	void convertOnlyAppendedInstructions() {
+		List<Message> firstTurn = List.of(new SystemMessage("You are helpful"), new UserMessage("Weather?"));
+		List<ChatCompletionMessage> first = this.conversation.messages(firstTurn);
+
+		// The tool calling manager copies the instructions of the previous turn.
+		List<Message> secondTurn = List.of(new SystemMessage("You are helpful"), new UserMessage("Weather?"),
+				new AssistantMessage("Let me check"), new ToolResponseMessage(List.of(), Map.of()));
+		this.converted.clear();
+		List<ChatCompletionMessage> second = this.conversation.messages(secondTurn);
+
+		assertThat(this.converted).containsExactlyElementsOf(secondTurn.subList(2, 4));
+		assertThat(second).hasSize(4);
+		assertThat(second.get(0)).isSameAs(first.get(0));
+		assertThat(second.get(1)).isSameAs(first.get(1));
+	}
+
+	@Test
+	void restartDivergingConversation() {
+		this.conversation.messages(List.of(new UserMessage("Weather?")));
+		this.converted.clear();
+
+		List<ChatCompletionMessage> messages = this.conversation
+			.messages(List.of(new UserMessage("Time?"), new AssistantMessage("Noon")));
+
+		assertThat(this.converted).hasSize(2);
+		assertThat(messages).extracting(ChatCompletionMessage::content).containsExactly("Time?", "Noon");
+	}
+
+	@Test
+	void keepCommonInstructionsOfDivergingConversation() {
+		List<ChatCompletionMessage> first = this.conversation
+			.messages(List.of(new SystemMessage("You are helpful"), new UserMessage("Weather?")));
+		this.converted.clear();
+
+		List<ChatCompletionMessage> second = this.conversation
+			.messages(List.of(new SystemMessage("You are helpful"), new UserMessage("Time?")));
+
+		assertThat(this.converted).hasSize(1);
+		assertThat(second.get(0)).isSameAs(first.get(0));
+		assertThat(second).extracting(ChatCompletionMessage::content).containsExactly("You are helpful", "Time?");
+		assertThat(first).extracting(ChatCompletionMessage::content).containsExactly("You are helpful", "Weather?");
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotDeltaCoalescerTests {
+
+	@Test
+	void coalesceUntilByteThreshold() {
+		MoonshotDeltaCoalescer coalescer = new MoonshotDeltaCoalescer(4, Duration.ofMinutes(1));
+
+		List<ChatResponse> responses = coalescer
+			.coalesce(Flux.just(delta("a"), delta("b"), delta("cd"), delta("e"), delta("f")))
+			.collectList()
+			.block();
+
+		assertThat(responses).extracting(response -> response.getResult().getOutput().getText())
+			.containsExactly("abcd", "ef");
+	}
+
+	@Test
+	void relaySignalsImmediately() {
+		MoonshotDeltaCoalescer coalescer = new MoonshotDeltaCoalescer(1024, Duration.ofMinutes(1));
+		ChatResponse finish = new ChatResponse(List.of(new Generation(new AssistantMessage(""),
+				ChatGenerationMetadata.builder().finishReason("STOP").build())));
+
+		List<ChatResponse> responses = coalescer.coalesce(Flux.just(delta("a"), delta("b"), finish, delta("c")))
+			.collectList()
+			.block();
+
+		assertThat(responses).hasSize(3);
+		assertThat(responses.get(0).getResult().getOutput().getText()).isEqualTo("ab");
+		assertThat(responses.get(1)).isSameAs(finish);
+		assertThat(responses.get(2).getResult().getOutput().getText()).isEqualTo("c");
+	}
+
+	@Test
+	void flushAfterLatencyBudget() {
+		MoonshotDeltaCoalescer coalescer = new MoonshotDeltaCoalescer(1024, Duration.ofMillis(20));
+		Flux<ChatResponse> source = Flux.concat(Flux.just(delta("a"), delta("b")),
+				Mono.delay(Duration.ofMillis(500)).map(tick -> delta("c")));
+
+		List<ChatResponse> responses = coalescer.coalesce(source).collectList().block();
+
+		assertThat(responses).extracting(response -> response.getResult().getOutput().getText())
+			.containsExactly("ab", "c");
+	}
+
+	@Test
+	void requestUpstreamInStepWithDemand() {
+		MoonshotDeltaCoalescer coalescer = new MoonshotDeltaCoalescer(2, Duration.ofMinutes(1));
+		AtomicLong upstreamRequested = new AtomicLong();
+		Flux<ChatResponse> source = Flux.range(0, 1000)
+			.map(i -> delta("ab"))
+			.doOnRequest(n -> upstreamRequested.addAndGet(n));
+		List<ChatResponse> received = new ArrayList<>();
+		BaseSubscriber<ChatResponse> slowSubscriber = new BaseSubscriber<>() {
+
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+				request(2);
+			}
+
+			@Override
+			protected void hookOnNext(ChatResponse response) {
+				received.add(response);
+			}
+
+		};
+
+		coalescer.coalesce(source).subscribe(slowSubscriber);
+
+		assertThat(received).hasSize(2);
+		assertThat(upstreamRequested).hasValue(2);
+
+		slowSubscriber.request(3);
+
+		assertThat(received).hasSize(5);
+		assertThat(upstreamRequested).hasValue(5);
+		slowSubscriber.dispose();
+	}
+
+	private static ChatResponse delta(String content) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(content, Map.of()))));
+	}
+
+}
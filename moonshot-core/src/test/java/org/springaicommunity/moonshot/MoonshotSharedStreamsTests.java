@@ -0,0 +1,221 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.StreamingChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author agent
+ */
+class MoonshotSharedStreamsTests {
+
+	private final Sinks.Many<ChatResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+
+	private final StreamingChatModel chatModel = prompt -> Flux.defer(() -> {
+		this.requests.incrementAndGet();
+		return this.upstream.asFlux().doOnCancel(() -> this.cancelled.set(true));
+	});
+
+	private final Prompt prompt = new Prompt("Tell a story");
+
+	@Test
+	void lateSubscriberReplaysCompactBufferThenFollowsLive() {
+		MoonshotSharedStreams streams = new MoonshotSharedStreams(this.chatModel, 1024);
+		List<String> first = new CopyOnWriteArrayList<>();
+		List<String> second = new CopyOnWriteArrayList<>();
+
+		streams.stream("session", this.prompt).subscribe(response -> first.add(text(response)));
+		this.upstream.tryEmitNext(delta("Once"));
+		this.upstream.tryEmitNext(delta(" upon"));
+		streams.stream("session", this.prompt).subscribe(response -> second.add(text(response)));
+		this.upstream.tryEmitNext(delta(" a time"));
+		this.upstream.tryEmitNext(finish());
+		this.upstream.tryEmitComplete();
+
+		assertThat(this.requests).hasValue(1);
+		assertThat(first).containsExactly("Once", " upon", " a time", "");
+		assertThat(second).containsExactly("Once upon", " a time", "");
+		assertThat(streams.isActive("session")).isFalse();
+	}
+
+	@Test
+	void cancelUpstreamWhenAllSubscribersLeave() {
+		MoonshotSharedStreams streams = new MoonshotSharedStreams(this.chatModel, 1024);
+
+		Disposable first = streams.stream("session", this.prompt).subscribe();
+		Disposable second = streams.stream("session", this.prompt).subscribe();
+		first.dispose();
+
+		assertThat(this.cancelled).isFalse();
+
+		second.dispose();
+
+		assertThat(this.cancelled).isTrue();
+		assertThat(streams.isActive("session")).isFalse();
+	}
+
+	@Test
+	void joiningAfterReplayOverflowFails() {
+		MoonshotSharedStreams streams = new MoonshotSharedStreams(this.chatModel, 4);
+		AtomicInteger received = new AtomicInteger();
+
+		streams.stream("session", this.prompt).subscribe(response -> received.incrementAndGet());
+		this.upstream.tryEmitNext(delta("Once upon"));
+
+		assertThat(received).hasValue(1);
+		assertThatThrownBy(() -> streams.stream("session", this.prompt).blockLast())
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("overflowed");
+	}
+
+	@Test
+	void replaySegmentsWithTheirOwnMetadata() {
+		MoonshotSharedStreams streams = new MoonshotSharedStreams(this.chatModel, 1024);
+		streams.stream("session", this.prompt).subscribe();
+		this.upstream.tryEmitNext(delta("Once", "1"));
+		this.upstream.tryEmitNext(delta(" upon", "2"));
+		ChatResponse toolCall = toolCall("3");
+		this.upstream.tryEmitNext(toolCall);
+		this.upstream.tryEmitNext(delta(" a", "4"));
+		this.upstream.tryEmitNext(delta(" time", "5"));
+		List<ChatResponse> replayed = new CopyOnWriteArrayList<>();
+
+		streams.stream("session", this.prompt).subscribe(replayed::add);
+
+		assertThat(replayed).extracting(MoonshotSharedStreamsTests::text).containsExactly("Once upon", "", " a time");
+		assertThat(replayed).extracting(response -> response.getMetadata().getId()).containsExactly("2", "3", "5");
+		assertThat(replayed.get(1)).isSameAs(toolCall);
+	}
+
+	@Test
+	void slowSubscriberGetsCoalescedDeltasOnDemand() {
+		MoonshotSharedStreams streams = new MoonshotSharedStreams(this.chatModel, 1024);
+		List<String> fast = new CopyOnWriteArrayList<>();
+		List<String> slow = new CopyOnWriteArrayList<>();
+		BaseSubscriber<ChatResponse> slowSubscriber = subscriber(slow, 1);
+
+		streams.stream("session", this.prompt).subscribe(response -> fast.add(text(response)));
+		streams.stream("session", this.prompt).subscribe(slowSubscriber);
+		this.upstream.tryEmitNext(delta("Once"));
+		this.upstream.tryEmitNext(delta(" upon"));
+		this.upstream.tryEmitNext(delta(" a time"));
+
+		assertThat(fast).containsExactly("Once", " upon", " a time");
+		assertThat(slow).containsExactly("Once");
+
+		slowSubscriber.request(Long.MAX_VALUE);
+		this.upstream.tryEmitComplete();
+
+		assertThat(slow).containsExactly("Once", " upon a time");
+	}
+
+	@Test
+	void subscriberFallingBehindFails() {
+		MoonshotSharedStreams streams = new MoonshotSharedStreams(this.chatModel, 8);
+		List<String> fast = new CopyOnWriteArrayList<>();
+		AtomicReference<Throwable> slowError = new AtomicReference<>();
+
+		streams.stream("session", this.prompt).subscribe(response -> fast.add(text(response)));
+		streams.stream("session", this.prompt).subscribe(new BaseSubscriber<>() {
+
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+			}
+
+			@Override
+			protected void hookOnError(Throwable throwable) {
+				slowError.set(throwable);
+			}
+
+		});
+		this.upstream.tryEmitNext(delta("Once upon"));
+		this.upstream.tryEmitNext(delta(" a time"));
+
+		assertThat(slowError.get()).isInstanceOf(IllegalStateException.class).hasMessageContaining("fell behind");
+		assertThat(fast).containsExactly("Once upon", " a time");
+		assertThat(this.cancelled).isFalse();
+		assertThat(streams.isActive("session")).isTrue();
+	}
+
+	private static BaseSubscriber<ChatResponse> subscriber(List<String> received, long initialRequest) {
+		return new BaseSubscriber<>() {
+
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+				request(initialRequest);
+			}
+
+			@Override
+			protected void hookOnNext(ChatResponse response) {
+				received.add(text(response));
+			}
+
+		};
+	}
+
+	private static String text(ChatResponse response) {
+		return response.getResult().getOutput().getText();
+	}
+
+	private static ChatResponse delta(String content) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(content, Map.of()))));
+	}
+
+	private static ChatResponse delta(String content, String id) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(content, Map.of()))),
+				ChatResponseMetadata.builder().id(id).build());
+	}
+
+	private static ChatResponse toolCall(String id) {
+		return new ChatResponse(
+				List.of(new Generation(new AssistantMessage("", Map.of(),
+						List.of(new AssistantMessage.ToolCall("call-1", "function", "weather", "{}"))))),
+				ChatResponseMetadata.builder().id(id).build());
+	}
+
+	private static ChatResponse finish() {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(""),
+				ChatGenerationMetadata.builder().finishReason("STOP").build())));
+	}
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ChatCompletionFunction;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotStreamEvent;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author agent
+ */
+class MoonshotSpeculativeToolExecutionTests {
+
+	private static final String TOOL_CALL_EVENT = """
+			data: {"id":"1","choices":[{"index":0,"delta":{"role":"assistant","tool_calls":[{"index":0,"id":"call-1","type":"function","function":{"name":"weather","arguments":"{\\"city\\":\\"Paris\\"}"}}]}}]}
+
+			""";
+
+	private final Prompt prompt = new Prompt(new UserMessage("Weather and time?"));
+
+	private final List<String> executed = new ArrayList<>();
+
+	private final List<AssistantMessage> messages = new ArrayList<>();
+
+	private final AtomicInteger submitted = new AtomicInteger();
+
+	private final MoonshotSpeculativeToolExecution execution = new MoonshotSpeculativeToolExecution(
+			toolCallingManager(), this.prompt, task -> {
+				this.submitted.incrementAndGet();
+				task.run();
+			});
+
+	@Test
+	void reuseSpeculativeResults() {
+		this.execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+
+		ToolExecutionResult result = this.execution.executeToolCalls(
+				response(new AssistantMessage.ToolCall("call-1", "function", "weather", "{\"city\":\"Paris\"}"),
+						new AssistantMessage.ToolCall("call-2", "function", "time", "{}")));
+
+		assertThat(this.submitted).hasValue(1);
+		assertThat(this.executed).containsExactly("call-1", "call-2");
+		List<Message> history = result.conversationHistory();
+		assertThat(history).hasSize(3);
+		assertThat(((AssistantMessage) history.get(1)).getToolCalls()).hasSize(2);
+		assertThat(((ToolResponseMessage) history.get(2)).getResponses())
+			.extracting(ToolResponseMessage.ToolResponse::id)
+			.containsExactly("call-1", "call-2");
+	}
+
+	@Test
+	void executeWithAssistantMessage() {
+		this.execution.onEvent(new MoonshotStreamEvent.ContentDelta(0, "Let me "));
+		this.execution.onEvent(new MoonshotStreamEvent.ContentDelta(0, "check."));
+		this.execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+
+		ToolExecutionResult result = this.execution.executeToolCalls(response("Let me check.",
+				new AssistantMessage.ToolCall("call-1", "function", "weather", "{\"city\":\"Paris\"}"),
+				new AssistantMessage.ToolCall("call-2", "function", "time", "{}"),
+				new AssistantMessage.ToolCall("call-3", "function", "date", "{}")));
+
+		// The speculative call sees the content streamed before it, the other calls are
+		// executed in a single batch with the final message.
+		assertThat(this.messages).hasSize(2);
+		assertThat(this.messages.get(0).getText()).isEqualTo("Let me check.");
+		assertThat(this.messages.get(0).getToolCalls()).extracting(AssistantMessage.ToolCall::id)
+			.containsExactly("call-1");
+		assertThat(this.messages.get(1).getText()).isEqualTo("Let me check.");
+		assertThat(this.messages.get(1).getToolCalls()).extracting(AssistantMessage.ToolCall::id)
+			.containsExactly("call-2", "call-3");
+		assertThat(((ToolResponseMessage) result.conversationHistory().get(2)).getResponses())
+			.extracting(ToolResponseMessage.ToolResponse::id)
+			.containsExactly("call-1", "call-2", "call-3");
+	}
+
+	@Test
+	void executeAgainWhenContentChanged() {
+		this.execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+
+		this.execution.executeToolCalls(response("Checking",
+				new AssistantMessage.ToolCall("call-1", "function", "weather", "{\"city\":\"Paris\"}")));
+
+		assertThat(this.executed).containsExactly("call-1", "call-1");
+		assertThat(this.messages).extracting(AssistantMessage::getText).containsExactly("", "Checking");
+	}
+
+	@Test
+	void executeAgainWhenArgumentsChanged() {
+		this.execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+
+		ToolExecutionResult result = this.execution.executeToolCalls(
+				response(new AssistantMessage.ToolCall("call-1", "function", "weather", "{\"city\":\"Paris\"} ")));
+
+		assertThat(this.executed).containsExactly("call-1", "call-1");
+		assertThat(((ToolResponseMessage) result.conversationHistory().get(2)).getResponses()).singleElement()
+			.extracting(ToolResponseMessage.ToolResponse::responseData)
+			.isEqualTo("{\"city\":\"Paris\"} ");
+	}
+
+	@Test
+	void startReplayedToolCallOnce() {
+		// A retried or resumed stream completes the same tool call again.
+		this.execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+		this.execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+
+		this.execution.executeToolCalls(
+				response(new AssistantMessage.ToolCall("call-1", "function", "weather", "{\"city\":\"Paris\"}")));
+
+		assertThat(this.submitted).hasValue(1);
+		assertThat(this.executed).containsExactly("call-1");
+	}
+
+	@Test
+	void dropPendingToolCallsWhenCancelled() {
+		Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		var execution = new MoonshotSpeculativeToolExecution(toolCallingManager(), this.prompt, tasks::add);
+		execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+
+		execution.cancel();
+		execution.onEvent(completed("call-2", "time", "{}"));
+		tasks.forEach(Runnable::run);
+
+		assertThat(tasks).hasSize(1);
+		assertThat(this.executed).isEmpty();
+	}
+
+	@Test
+	void dropToolCallsNotRequestedByFinalResponse() {
+		Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		var execution = new MoonshotSpeculativeToolExecution(toolCallingManager(), this.prompt, tasks::add);
+		execution.onEvent(completed("call-1", "weather", "{\"city\":\"Paris\"}"));
+
+		execution.executeToolCalls(response(new AssistantMessage.ToolCall("call-2", "function", "time", "{}")));
+		tasks.forEach(Runnable::run);
+
+		assertThat(this.executed).containsExactly("call-2");
+	}
+
+	@Test
+	void dropPendingToolCallsWhenStreamFails() {
+		Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		MoonshotChatModel chatModel = chatModel(Flux.concat(Flux.just(buffer(TOOL_CALL_EVENT)),
+				Flux.error(new IllegalStateException("Connection reset"))), tasks::add);
+
+		assertThatThrownBy(() -> chatModel.stream(this.prompt).blockLast()).hasMessageContaining("Connection reset");
+		tasks.forEach(Runnable::run);
+
+		assertThat(tasks).hasSize(1);
+		assertThat(this.executed).isEmpty();
+	}
+
+	@Test
+	void dropPendingToolCallsWhenStreamIsCancelled() throws InterruptedException {
+		Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		MoonshotChatModel chatModel = chatModel(
+				Flux.concat(Flux.just(buffer(TOOL_CALL_EVENT)), Flux.<DataBuffer>never()), tasks::add);
+
+		Disposable subscription = chatModel.stream(this.prompt).subscribe();
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (tasks.isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		subscription.dispose();
+		tasks.forEach(Runnable::run);
+
+		assertThat(tasks).hasSize(1);
+		assertThat(this.executed).isEmpty();
+	}
+
+	private MoonshotChatModel chatModel(Flux<DataBuffer> body, Executor executor) {
+		MoonshotApi moonshotApi = MoonshotApi.builder()
+			.apiKey("key")
+			.webClientBuilder(WebClient.builder()
+				.exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+					.body(body)
+					.build())))
+			.build();
+		return MoonshotChatModel.builder()
+			.moonshotApi(moonshotApi)
+			.toolCallingManager(toolCallingManager())
+			.speculativeToolExecutor(executor)
+			.build();
+	}
+
+	private static DataBuffer buffer(String content) {
+		return DefaultDataBufferFactory.sharedInstance.wrap(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private ToolCallingManager toolCallingManager() {
+		ToolCallingManager toolCallingManager = mock(ToolCallingManager.class);
+		given(toolCallingManager.executeToolCalls(any(), any())).willAnswer(invocation -> {
+			ChatResponse response = invocation.getArgument(1);
+			AssistantMessage message = response.getResult().getOutput();
+			this.messages.add(message);
+			List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>();
+			for (AssistantMessage.ToolCall toolCall : message.getToolCalls()) {
+				this.executed.add(toolCall.id());
+				toolResponses
+					.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), toolCall.arguments()));
+			}
+			return ToolExecutionResult.builder()
+				.conversationHistory(List.of(this.prompt.getInstructions().get(0), message,
+						new ToolResponseMessage(toolResponses, Map.of())))
+				.build();
+		});
+		return toolCallingManager;
+	}
+
+	private static MoonshotStreamEvent completed(String id, String name, String arguments) {
+		return new MoonshotStreamEvent.ToolCallCompleted(0, 0,
+				new ToolCall(id, "function", new ChatCompletionFunction(name, arguments)));
+	}
+
+	private static ChatResponse response(AssistantMessage.ToolCall... toolCalls) {
+		return response("", toolCalls);
+	}
+
+	private static ChatResponse response(String text, AssistantMessage.ToolCall... toolCalls) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(text, Map.of(), List.of(toolCalls)))));
+	}
+
+}
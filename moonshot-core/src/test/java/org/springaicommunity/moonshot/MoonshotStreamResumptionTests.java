@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk.ChunkChoice;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionFinishReason;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ChatCompletionFunction;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.ai.model.ModelOptionsUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author agent
+ */
+class MoonshotStreamResumptionTests {
+
+	private static final ChatCompletionRequest REQUEST = new ChatCompletionRequest(
+			List.of(new ChatCompletionMessage("Tell a story", Role.USER)), true);
+
+	private final List<ChatCompletionRequest> requests = new ArrayList<>();
+
+	@Test
+	void resumeInterruptedStreamWithPartialMessage() {
+		Flux<ChatCompletionChunk> chunks = MoonshotStreamResumption.resumable(REQUEST, request -> {
+			this.requests.add(request);
+			return (this.requests.size() == 1)
+					? Flux.just(chunk("Once", null), chunk(" upon", null)).concatWith(interrupted())
+					: Flux.just(chunk(" a time", ChatCompletionFinishReason.STOP));
+		}, 1);
+
+		assertThat(chunks.map(chunk -> chunk.choices().get(0).delta().content()).collectList().block())
+			.containsExactly("Once", " upon", " a time");
+		assertThat(this.requests).hasSize(2);
+		ChatCompletionMessage partial = this.requests.get(1).messages().get(1);
+		assertThat(partial.role()).isEqualTo(Role.ASSISTANT);
+		assertThat(partial.content()).isEqualTo("Once upon");
+		assertThat(ModelOptionsUtils.toJsonString(partial)).contains("\"partial\":true");
+		assertThat(ModelOptionsUtils.toJsonString(REQUEST.messages().get(0))).doesNotContain("partial");
+	}
+
+	@Test
+	void giveContinuationTheTokensLeft() {
+		var request = new ChatCompletionRequest(REQUEST.messages(), null, 3, null, null, null, null, null, null, true,
+				null, null);
+
+		Flux<ChatCompletionChunk> chunks = MoonshotStreamResumption.resumable(request, r -> {
+			this.requests.add(r);
+			return (this.requests.size() == 1) ? Flux.just(chunk("Once", null)).concatWith(interrupted())
+					: Flux.just(chunk(" upon", null), chunk(" a", null)).concatWith(interrupted());
+		}, 2);
+
+		// The budget is used up after the continuation, it is not resumed again.
+		assertThatThrownBy(chunks::blockLast).isInstanceOf(IllegalStateException.class);
+		assertThat(this.requests).extracting(ChatCompletionRequest::maxTokens).containsExactly(3, 2);
+	}
+
+	@Test
+	void failWhenResumesAreExhausted() {
+		Flux<ChatCompletionChunk> chunks = MoonshotStreamResumption.resumable(REQUEST, request -> {
+			this.requests.add(request);
+			return Flux.just(chunk("Once", null)).concatWith(interrupted());
+		}, 2);
+
+		assertThatThrownBy(chunks::blockLast).isInstanceOf(IllegalStateException.class);
+		assertThat(this.requests).hasSize(3);
+		assertThat(this.requests.get(2).messages().get(1).content()).isEqualTo("OnceOnce");
+	}
+
+	@Test
+	void doNotResumeStreamsWithoutContentOrWithToolCalls() {
+		var toolCall = new ToolCall("call_1", "function", new ChatCompletionFunction("weather", "{}"));
+		var toolCallChunk = new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(0,
+						new ChatCompletionMessage("Let me check", null, null, null, List.of(toolCall)), null, null)));
+
+		assertThatThrownBy(MoonshotStreamResumption.resumable(REQUEST, request -> {
+			this.requests.add(request);
+			return Flux.just(toolCallChunk).concatWith(interrupted());
+		}, 1)::blockLast).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(MoonshotStreamResumption.resumable(REQUEST, request -> {
+			this.requests.add(request);
+			return interrupted();
+		}, 1)::blockLast).isInstanceOf(IllegalStateException.class);
+		assertThat(this.requests).hasSize(2);
+	}
+
+	private static Flux<ChatCompletionChunk> interrupted() {
+		return Flux.error(new IllegalStateException("Connection reset"));
+	}
+
+	private static ChatCompletionChunk chunk(String content, ChatCompletionFinishReason finishReason) {
+		return new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(0, new ChatCompletionMessage(content, Role.ASSISTANT), finishReason, null)));
+	}
+
+}
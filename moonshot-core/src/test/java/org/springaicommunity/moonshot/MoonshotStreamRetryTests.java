@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author agent
+ */
+class MoonshotStreamRetryTests {
+
+	private final AtomicInteger attempts = new AtomicInteger();
+
+	@Test
+	void retryTransientFailuresBeforeFirstChunk() {
+		MoonshotStreamRetry retry = retry(0, 10);
+
+		Flux<String> stream = retry.apply(Flux.defer(
+				() -> (this.attempts.incrementAndGet() < 3) ? Flux.error(failure(503)) : Flux.just("Hello", " world")));
+
+		assertThat(stream.collectList().block()).containsExactly("Hello", " world");
+		assertThat(this.attempts).hasValue(3);
+		assertThat(retry.getAvailableRetries()).isEqualTo(8);
+	}
+
+	@Test
+	void doNotRetryAfterFirstChunkOrOnClientErrors() {
+		MoonshotStreamRetry retry = retry(0, 10);
+
+		assertThatThrownBy(retry.apply(Flux.defer(() -> {
+			this.attempts.incrementAndGet();
+			return Flux.just("Hello").concatWith(Flux.error(failure(503)));
+		}))::blockLast).isInstanceOf(WebClientResponseException.class);
+		assertThatThrownBy(retry.apply(Flux.defer(() -> {
+			this.attempts.incrementAndGet();
+			return Flux.error(failure(400));
+		}))::blockLast).isInstanceOf(WebClientResponseException.class);
+		assertThat(this.attempts).hasValue(2);
+	}
+
+	@Test
+	void stopRetryingWhenBudgetIsExhausted() {
+		MoonshotStreamRetry retry = retry(0.5, 1);
+		Flux<String> failing = Flux.defer(() -> {
+			this.attempts.incrementAndGet();
+			return Flux.error(failure(429));
+		});
+
+		// The initial balance allows one retry.
+		assertThatThrownBy(retry.apply(failing)::blockLast).isInstanceOf(WebClientResponseException.class);
+		assertThat(this.attempts).hasValue(2);
+
+		// Two more streams are needed to earn the next retry.
+		assertThatThrownBy(retry.apply(failing)::blockLast).isInstanceOf(WebClientResponseException.class);
+		assertThat(this.attempts).hasValue(3);
+		assertThatThrownBy(retry.apply(failing)::blockLast).isInstanceOf(WebClientResponseException.class);
+		assertThat(this.attempts).hasValue(5);
+	}
+
+	@Test
+	void exhaustedAttemptsDoNotConsumeBudget() {
+		MoonshotStreamRetry retry = retry(0, 10);
+
+		assertThatThrownBy(retry.apply(Flux.defer(() -> {
+			this.attempts.incrementAndGet();
+			return Flux.error(failure(503));
+		}))::blockLast).isInstanceOf(WebClientResponseException.class);
+		assertThat(this.attempts).hasValue(4);
+		assertThat(retry.getAvailableRetries()).isEqualTo(7);
+	}
+
+	private static MoonshotStreamRetry retry(double retryRatio, int maxBudget) {
+		return MoonshotStreamRetry.builder()
+			.maxAttempts(3)
+			.minBackoff(Duration.ofMillis(1))
+			.maxBackoff(Duration.ofMillis(5))
+			.retryRatio(retryRatio)
+			.maxBudget(maxBudget)
+			.build();
+	}
+
+	private static WebClientResponseException failure(int status) {
+		return WebClientResponseException.create(status, "Failure", null, null, null);
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotToolResponsePolicyTests {
+
+	@Test
+	void minifyJsonKeepingNumbersAsWritten() {
+		MoonshotToolResponsePolicy policy = MoonshotToolResponsePolicy.minifyJson();
+
+		assertThat(apply(policy, "{ \"price\" : 1.10,\n  \"tags\" : [ \"a\", \"b\" ], \"id\": 12345678901234567890 }"))
+			.isEqualTo("{\"price\":1.10,\"tags\":[\"a\",\"b\"],\"id\":12345678901234567890}");
+		assertThat(apply(policy, "sunny, 25 degrees")).isEqualTo("sunny, 25 degrees");
+		assertThat(apply(policy, "{\"weather\": \"sunny\"} and more")).isEqualTo("{\"weather\": \"sunny\"} and more");
+		assertThat(apply(policy, "{\"weather\": ")).isEqualTo("{\"weather\": ");
+	}
+
+	@Test
+	void truncateLongResponses() {
+		MoonshotToolResponsePolicy policy = MoonshotToolResponsePolicy.truncate(5);
+
+		assertThat(apply(policy, "sunny")).isEqualTo("sunny");
+		assertThat(apply(policy, "sunny, 25 degrees")).isEqualTo("sunny... [12 characters truncated]");
+		assertThat(apply(policy, "rain🌧")).isEqualTo("rain... [2 characters truncated]");
+	}
+
+	@Test
+	void combinePolicies() {
+		MoonshotToolResponsePolicy policy = MoonshotToolResponsePolicy.perTool(
+				Map.of("search", MoonshotToolResponsePolicy.truncate(3)),
+				MoonshotToolResponsePolicy.minifyJson().andThen(MoonshotToolResponsePolicy.elideOlder("[elided]")));
+
+		assertThat(policy.apply(new ToolResponse("1", "search", "results"), true))
+			.isEqualTo("res... [4 characters truncated]");
+		assertThat(policy.apply(new ToolResponse("2", "weather", "{ \"weather\" : \"sunny\" }"), true))
+			.isEqualTo("{\"weather\":\"sunny\"}");
+		assertThat(policy.apply(new ToolResponse("2", "weather", "{ \"weather\" : \"sunny\" }"), false))
+			.isEqualTo("[elided]");
+	}
+
+	@Test
+	void elideToolResponsesOfPreviousTurns() {
+		MoonshotChatModel chatModel = MoonshotChatModel.builder()
+			.moonshotApi(MoonshotApi.builder().apiKey("key").build())
+			.toolResponsePolicy(MoonshotToolResponsePolicy.elideOlder("[elided]"))
+			.build();
+		MoonshotChatOptions options = MoonshotChatOptions.builder().build();
+		Message user = new UserMessage("Weather in Beijing and Shanghai?");
+		Message firstCall = new AssistantMessage("", Map.of(),
+				List.of(new AssistantMessage.ToolCall("1", "function", "weather", "{\"city\":\"Beijing\"}")));
+		Message firstResponse = new ToolResponseMessage(List.of(new ToolResponse("1", "weather", "sunny")));
+		Message secondCall = new AssistantMessage("", Map.of(),
+				List.of(new AssistantMessage.ToolCall("2", "function", "weather", "{\"city\":\"Shanghai\"}")));
+		Message secondResponse = new ToolResponseMessage(List.of(new ToolResponse("2", "weather", "rainy")));
+
+		ChatCompletionRequest firstTurn = chatModel
+			.createRequest(new Prompt(List.of(user, firstCall, firstResponse), options), false);
+		ChatCompletionRequest secondTurn = chatModel.createRequest(
+				new Prompt(List.of(user, firstCall, firstResponse, secondCall, secondResponse), options), false);
+
+		assertThat(firstTurn.messages()).extracting(ChatCompletionMessage::content)
+			.containsExactly("Weather in Beijing and Shanghai?", "", "sunny");
+		assertThat(secondTurn.messages()).extracting(ChatCompletionMessage::content)
+			.containsExactly("Weather in Beijing and Shanghai?", "", "[elided]", "", "rainy");
+	}
+
+	@Test
+	void reconvertOnlyToolResponsesLeavingLatestTurn() {
+		List<Message> converted = new ArrayList<>();
+		MoonshotToolResponsePolicy policy = MoonshotToolResponsePolicy.elideOlder("[elided]");
+		var conversation = new MoonshotConversation((message, latest, messages) -> {
+			converted.add(message);
+			String content = (message instanceof ToolResponseMessage toolMessage)
+					? policy.apply(toolMessage.getResponses().get(0), latest) : message.getText();
+			messages.add(new ChatCompletionMessage(content, ChatCompletionMessage.Role.USER));
+		}, true);
+		Message user = new UserMessage("Weather?");
+		Message call = new AssistantMessage("Let me check");
+		Message firstResponse = new ToolResponseMessage(List.of(new ToolResponse("1", "weather", "sunny")));
+		Message secondResponse = new ToolResponseMessage(List.of(new ToolResponse("2", "weather", "rainy")));
+
+		List<ChatCompletionMessage> first = conversation.messages(List.of(user, call, firstResponse));
+		converted.clear();
+		List<ChatCompletionMessage> second = conversation
+			.messages(List.of(user, call, firstResponse, call, secondResponse));
+
+		assertThat(converted).containsExactly(firstResponse, call, secondResponse);
+		assertThat(second.get(0)).isSameAs(first.get(0));
+		assertThat(second).extracting(ChatCompletionMessage::content)
+			.containsExactly("Weather?", "Let me check", "[elided]", "Let me check", "rainy");
+		assertThat(first).extracting(ChatCompletionMessage::content)
+			.containsExactly("Weather?", "Let me check", "sunny");
+	}
+
+	private static String apply(MoonshotToolResponsePolicy policy, String content) {
+		return policy.apply(new ToolResponse("1", "tool", content), true);
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi;
+import org.springaicommunity.moonshot.api.MoonshotApi.FunctionTool;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotToolSelectorTests {
+
+	private static final List<ToolDefinition> TOOLS = List.of(tool("getCurrentWeather", "Get the weather of a city"),
+			tool("sendEmail", "Send an email to a recipient"), tool("searchFlights", "Search flights between cities"),
+			tool("convertCurrency", "Convert an amount between currencies"),
+			tool("getStockPrice", "Get the stock price of a company"));
+
+	@Test
+	void tokenizeNamesAndText() {
+		assertThat(MoonshotToolSelector.tokenize("getCurrentWeather, send_email a 2024")).containsExactly("get",
+				"current", "weather", "send", "email", "2024");
+		assertThat(MoonshotToolSelector.tokenize("北京天气")).containsExactly("北", "京", "天", "气");
+	}
+
+	@Test
+	void selectMostRelevantToolsInRegistrationOrder() {
+		var selector = new MoonshotToolSelector(2);
+
+		List<ToolDefinition> selection = selector.select(TOOLS,
+				List.of(new UserMessage("What is the weather in Paris? Then search flights to Paris.")));
+
+		assertThat(selection).extracting(ToolDefinition::name).containsExactly("getCurrentWeather", "searchFlights");
+		MoonshotToolSelectionMetrics metrics = selector.getMetrics();
+		assertThat(metrics.getSelections()).isEqualTo(1);
+		assertThat(metrics.getOfferedTools()).isEqualTo(5);
+		assertThat(metrics.getSelectedTools()).isEqualTo(2);
+		assertThat(metrics.getEstimatedTokensSaved()).isPositive();
+		assertThat(metrics.getSelectionNanos()).isPositive();
+	}
+
+	@Test
+	void breakTiesByRegistrationOrder() {
+		var selector = new MoonshotToolSelector(3);
+
+		// Only the weather tool matches, the other tools tie with a zero score.
+		assertThat(selector.select(TOOLS, List.of(new UserMessage("Weather?")))).extracting(ToolDefinition::name)
+			.containsExactly("getCurrentWeather", "sendEmail", "searchFlights");
+	}
+
+	@Test
+	void tokenizeWhateverTheDefaultLocale() {
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(Locale.forLanguageTag("tr"));
+		try {
+			assertThat(MoonshotToolSelector.tokenize("LIST TITLES")).containsExactly("list", "titles");
+		}
+		finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	void keepCalledAndAlwaysIncludedTools() {
+		var selector = new MoonshotToolSelector(1, Set.of("sendEmail"));
+		List<Message> instructions = List.of(new UserMessage("Convert 100 euros to dollars"),
+				new AssistantMessage("", Map.of(),
+						List.of(new AssistantMessage.ToolCall("1", "function", "getStockPrice", "{}"))),
+				new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("1", "getStockPrice", "42"))));
+
+		assertThat(selector.select(TOOLS, instructions)).extracting(ToolDefinition::name)
+			.containsExactly("sendEmail", "convertCurrency", "getStockPrice");
+	}
+
+	@Test
+	void keepAllToolsWithinTheLimit() {
+		var selector = new MoonshotToolSelector(5);
+
+		assertThat(selector.select(TOOLS, List.of(new UserMessage("Hello")))).isSameAs(TOOLS);
+		assertThat(selector.getMetrics().getSelections()).isZero();
+	}
+
+	@Test
+	void sendSelectedToolsOnly() {
+		var chatModel = MoonshotChatModel.builder()
+			.moonshotApi(MoonshotApi.builder().apiKey("TEST").build())
+			.toolSelector(new MoonshotToolSelector(1))
+			.build();
+		ToolCallback[] callbacks = TOOLS.stream().map(MoonshotToolSelectorTests::callback).toArray(ToolCallback[]::new);
+
+		var request = chatModel.createRequest(chatModel.buildRequestPrompt(
+				new Prompt("Send an email to Bob", MoonshotChatOptions.builder().toolCallbacks(callbacks).build())),
+				false);
+
+		assertThat(request.tools()).extracting(FunctionTool::function)
+			.extracting(FunctionTool.Function::name)
+			.containsExactly("sendEmail");
+	}
+
+	private static ToolDefinition tool(String name, String description) {
+		return ToolDefinition.builder()
+			.name(name)
+			.description(description)
+			.inputSchema("{\"type\":\"object\",\"properties\":{}}")
+			.build();
+	}
+
+	private static ToolCallback callback(ToolDefinition toolDefinition) {
+		return new ToolCallback() {
+
+			@Override
+			public ToolDefinition getToolDefinition() {
+				return toolDefinition;
+			}
+
+			@Override
+			public String call(String toolInput) {
+				return "";
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class JsonCompletenessTrackerTests {
+
+	@Test
+	void completeOnClosingBrace() {
+		JsonCompletenessTracker tracker = new JsonCompletenessTracker();
+
+		assertThat(tracker.append(" {\"city\":")).isFalse();
+		assertThat(tracker.append("{\"name\":\"Par")).isFalse();
+		assertThat(tracker.append("is\"}")).isFalse();
+		assertThat(tracker.append("}")).isTrue();
+		assertThat(tracker.isComplete()).isTrue();
+	}
+
+	@Test
+	void ignoreBracesInStrings() {
+		JsonCompletenessTracker tracker = new JsonCompletenessTracker();
+
+		assertThat(tracker.append("{\"q\":\"} \\\" ]\"")).isFalse();
+		assertThat(tracker.append("}")).isTrue();
+	}
+
+	@Test
+	void scalarsAreNotTracked() {
+		JsonCompletenessTracker tracker = new JsonCompletenessTracker();
+
+		assertThat(tracker.append("42")).isFalse();
+		assertThat(tracker.append("}")).isFalse();
+		assertThat(tracker.isComplete()).isFalse();
+	}
+
+}
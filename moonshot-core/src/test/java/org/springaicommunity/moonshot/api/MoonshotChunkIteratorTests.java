@@ -0,0 +1,180 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * @author agent
+ */
+class MoonshotChunkIteratorTests {
+
+	private static final String BODY = """
+			data: {"id":"1","choices":[{"index":0,"delta":{"role":"assistant","content":"Hi"}}]}
+
+			data: {"id":"1","choices":[{"index":0,"delta":{"tool_calls":[{"index":0,"id":"call-1","type":"function","function":{"name":"weather","arguments":"{"}}]}}]}
+
+			data: {"id":"1","choices":[{"index":0,"delta":{"tool_calls":[{"index":0,"function":{"arguments":"}"}}]},"finish_reason":"tool_calls"}]}
+
+			data: [DONE]
+
+			""";
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private final MoonshotApi moonshotApi = MoonshotApi.builder()
+		.apiKey("key")
+		.restClientBuilder(RestClient.builder().requestFactory((uri, method) -> {
+			MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+			request.setResponse(new MockClientHttpResponse(new SlowInputStream(BODY), HttpStatus.OK) {
+
+				@Override
+				public void close() {
+					MoonshotChunkIteratorTests.this.closed.set(true);
+					super.close();
+				}
+
+			});
+			return request;
+		}))
+		.build();
+
+	private final ChatCompletionRequest request = new ChatCompletionRequest(
+			List.of(new ChatCompletionMessage("Hi", Role.USER)), true);
+
+	@Test
+	void streamMergesToolCallWindows() {
+		List<ChatCompletionChunk> chunks;
+		try (Stream<ChatCompletionChunk> stream = this.moonshotApi.chatCompletionBlockingStream(this.request)) {
+			chunks = stream.toList();
+		}
+
+		assertThat(chunks).hasSize(2);
+		assertThat(chunks.get(0).choices().get(0).delta().content()).isEqualTo("Hi");
+		assertThat(chunks.get(1).choices().get(0).delta().toolCalls()).singleElement()
+			.extracting(toolCall -> toolCall.function().arguments())
+			.isEqualTo("{}");
+		assertThat(this.closed).isTrue();
+	}
+
+	@Test
+	void closeAbortsTheExchange() {
+		Stream<ChatCompletionChunk> stream = this.moonshotApi.chatCompletionBlockingStream(this.request);
+		Iterator<ChatCompletionChunk> iterator = stream.iterator();
+		assertThat(iterator.next().choices().get(0).delta().content()).isEqualTo("Hi");
+		assertThat(this.closed).isFalse();
+
+		stream.close();
+
+		assertThat(this.closed).isTrue();
+		assertThat(iterator.hasNext()).isFalse();
+	}
+
+	@Test
+	void closeDoesNotWaitForTheEndOfTheStreamWithHttpUrlConnection() throws IOException {
+		assertEarlyCloseReturns(new SimpleClientHttpRequestFactory());
+	}
+
+	@Test
+	void closeDoesNotWaitForTheEndOfTheStreamWithHttpClient() throws IOException {
+		assertEarlyCloseReturns(new JdkClientHttpRequestFactory());
+	}
+
+	private void assertEarlyCloseReturns(ClientHttpRequestFactory requestFactory) throws IOException {
+		CountDownLatch generating = new CountDownLatch(1);
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE);
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream body = exchange.getResponseBody();
+			body.write(BODY.substring(0, BODY.indexOf("\n\n") + 2).getBytes(StandardCharsets.UTF_8));
+			body.flush();
+			try {
+				// The model is still generating.
+				generating.await(30, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		server.start();
+		try {
+			MoonshotApi moonshotApi = MoonshotApi.builder()
+				.apiKey("key")
+				.baseUrl("http://localhost:" + server.getAddress().getPort())
+				.restClientBuilder(RestClient.builder().requestFactory(requestFactory))
+				.build();
+			Stream<ChatCompletionChunk> stream = moonshotApi.chatCompletionBlockingStream(this.request);
+			assertThat(stream.iterator().next().choices().get(0).delta().content()).isEqualTo("Hi");
+
+			assertTimeoutPreemptively(Duration.ofSeconds(5), stream::close);
+		}
+		finally {
+			generating.countDown();
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * Returns the body a few bytes at a time, like a network stream.
+	 */
+	private static final class SlowInputStream extends ByteArrayInputStream {
+
+		SlowInputStream(String body) {
+			super(body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public synchronized int read(byte[] bytes, int offset, int length) {
+			return super.read(bytes, offset, Math.min(length, 16));
+		}
+
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springframework.ai.model.ModelOptionsUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author agent
+ */
+class MoonshotChunkParserTests {
+
+	private static final String CONTENT_CHUNK = """
+			{"id":"cmpl-1","object":"chat.completion.chunk","created":1711111111,"model":"moonshot-v1-8k",
+			"choices":[{"index":0,"delta":{"role":"assistant","content":"Hello \\"world\\""},"finish_reason":null}]}
+			""";
+
+	private static final String TOOL_CHUNK = """
+			{"id":"cmpl-1","object":"chat.completion.chunk","created":1711111111,"model":"moonshot-v1-8k",
+			"system_fingerprint":{"nested":[1,2]},
+			"choices":[{"index":0,"delta":{"tool_calls":[{"index":0,"id":"call-1","type":"function",
+			"function":{"name":"weather","arguments":"{\\"city\\":"}}]},"finish_reason":"tool_calls",
+			"usage":{"prompt_tokens":10,"completion_tokens":5,"total_tokens":15,"cached_tokens":8}}]}
+			""";
+
+	@Test
+	void parseMatchesDataBinding() throws Exception {
+		MoonshotChunkParser parser = new MoonshotChunkParser();
+		for (String json : new String[] { CONTENT_CHUNK, TOOL_CHUNK }) {
+			byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+			ChatCompletionChunk parsed = parser.parse(bytes, 0, bytes.length);
+			assertThat(parsed).isEqualTo(ModelOptionsUtils.jsonToObject(json, ChatCompletionChunk.class));
+		}
+	}
+
+	@Test
+	void repeatedValuesShareOneInstance() throws Exception {
+		MoonshotChunkParser parser = new MoonshotChunkParser();
+		byte[] first = CONTENT_CHUNK.getBytes(StandardCharsets.UTF_8);
+		byte[] second = TOOL_CHUNK.getBytes(StandardCharsets.UTF_8);
+
+		ChatCompletionChunk firstChunk = parser.parse(first, 0, first.length);
+		ChatCompletionChunk secondChunk = parser.parse(second, 0, second.length);
+
+		assertThat(secondChunk.id()).isSameAs(firstChunk.id());
+		assertThat(secondChunk.object()).isSameAs(firstChunk.object());
+		assertThat(secondChunk.model()).isSameAs(firstChunk.model());
+	}
+
+	@Test
+	void parseRejectsNonObjectDocument() {
+		byte[] bytes = "[1,2]".getBytes(StandardCharsets.UTF_8);
+
+		assertThatExceptionOfType(JsonParseException.class)
+			.isThrownBy(() -> new MoonshotChunkParser().parse(bytes, 0, bytes.length));
+	}
+
+	@Test
+	void parseRejectsUnknownRoleOrFinishReason() {
+		for (String json : new String[] { CONTENT_CHUNK.replace("\"assistant\"", "\"critic\""),
+				TOOL_CHUNK.replace("\"tool_calls\",", "\"insufficient_balance\",") }) {
+			byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+			assertThatExceptionOfType(JsonParseException.class)
+				.isThrownBy(() -> new MoonshotChunkParser().parse(bytes, 0, bytes.length))
+				.withMessageStartingWith("Unknown ");
+			assertThatExceptionOfType(RuntimeException.class)
+				.isThrownBy(() -> ModelOptionsUtils.jsonToObject(json, ChatCompletionChunk.class));
+		}
+	}
+
+}
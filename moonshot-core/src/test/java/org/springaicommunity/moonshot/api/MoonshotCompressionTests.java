@@ -0,0 +1,197 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springaicommunity.moonshot.api.MoonshotCompression.Encoding;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotCompressionTests {
+
+	private static final String FIRST_EVENT = """
+			data: {"id":"1","choices":[{"index":0,"delta":{"role":"assistant","content":"Hello"}}]}
+
+			""";
+
+	private static final String LAST_EVENTS = """
+			data: {"id":"1","choices":[{"index":0,"delta":{"content":" world"},"finish_reason":"stop"}]}
+
+			data: [DONE]
+
+			""";
+
+	private static final ChatCompletionRequest REQUEST = new ChatCompletionRequest(
+			List.of(new ChatCompletionMessage("Hello world. ".repeat(500), Role.USER)), true);
+
+	@Test
+	void compressRequestsAndDecompressBlockingStream() throws IOException {
+		AtomicReference<MockClientHttpRequest> sent = new AtomicReference<>();
+		byte[] responseBody = compress(Encoding.GZIP, FIRST_EVENT + LAST_EVENTS);
+		MoonshotApi moonshotApi = MoonshotApi.builder()
+			.apiKey("key")
+			.restClientBuilder(RestClient.builder().requestFactory((uri, method) -> {
+				MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+				MockClientHttpResponse response = new MockClientHttpResponse(responseBody, HttpStatus.OK);
+				response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+				request.setResponse(response);
+				sent.set(request);
+				return request;
+			}))
+			.compression(MoonshotCompression.gzip())
+			.build();
+
+		List<ChatCompletionChunk> chunks;
+		try (Stream<ChatCompletionChunk> stream = moonshotApi.chatCompletionBlockingStream(REQUEST)) {
+			chunks = stream.toList();
+		}
+
+		assertThat(chunks).extracting(chunk -> chunk.choices().get(0).delta().content())
+			.containsExactly("Hello", " world");
+		HttpHeaders headers = sent.get().getHeaders();
+		assertThat(headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(headers.getFirst(HttpHeaders.ACCEPT_ENCODING)).isEqualTo("gzip, deflate");
+		byte[] requestBody = new GZIPInputStream(new ByteArrayInputStream(sent.get().getBodyAsBytes())).readAllBytes();
+		assertThat(requestBody).isEqualTo(MoonshotRequestEncoder.write(REQUEST));
+
+		MoonshotTransportMetrics metrics = moonshotApi.getTransportMetrics();
+		assertThat(metrics.getRequestBytes()).isEqualTo(requestBody.length);
+		assertThat(metrics.getRequestWireBytes()).isEqualTo(sent.get().getBodyAsBytes().length)
+			.isLessThan(requestBody.length / 10);
+		assertThat(metrics.getResponseBytes()).isEqualTo((FIRST_EVENT + LAST_EVENTS).length());
+		assertThat(metrics.getResponseWireBytes()).isEqualTo(responseBody.length);
+	}
+
+	@Test
+	void decompressReactiveStreamInSmallChunks() throws IOException {
+		AtomicReference<ClientRequest> sent = new AtomicReference<>();
+		byte[] responseBody = compress(Encoding.DEFLATE, FIRST_EVENT + LAST_EVENTS);
+		List<DataBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < responseBody.length; i += 7) {
+			buffers.add(DefaultDataBufferFactory.sharedInstance
+				.wrap(Arrays.copyOfRange(responseBody, i, Math.min(i + 7, responseBody.length))));
+		}
+		MoonshotApi moonshotApi = MoonshotApi.builder()
+			.apiKey("key")
+			.webClientBuilder(WebClient.builder().exchangeFunction(request -> {
+				sent.set(request);
+				return Mono.just(ClientResponse.create(HttpStatus.OK)
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+					.header(HttpHeaders.CONTENT_ENCODING, "deflate")
+					.body(Flux.fromIterable(buffers))
+					.build());
+			}))
+			.compression(new MoonshotCompression(Encoding.DEFLATE, 0))
+			.build();
+
+		List<ChatCompletionChunk> chunks = moonshotApi.chatCompletionStream(REQUEST).collectList().block();
+
+		assertThat(chunks).extracting(chunk -> chunk.choices().get(0).delta().content())
+			.containsExactly("Hello", " world");
+		assertThat(sent.get().headers().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("deflate");
+		// The stream is cancelled once [DONE] is decoded, before the compressed trailer.
+		assertThat(moonshotApi.getTransportMetrics().getResponseWireBytes()).isPositive()
+			.isLessThanOrEqualTo(responseBody.length);
+		assertThat(moonshotApi.getTransportMetrics().getResponseBytes())
+			.isEqualTo((FIRST_EVENT + LAST_EVENTS).length());
+	}
+
+	@Test
+	void inflateEachFlushedEventAsItArrives() throws IOException {
+		for (Encoding encoding : Encoding.values()) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			OutputStream compressed = (encoding == Encoding.GZIP) ? new GZIPOutputStream(output, true)
+					: new DeflaterOutputStream(output, true);
+			compressed.write(FIRST_EVENT.getBytes(StandardCharsets.UTF_8));
+			compressed.flush();
+			byte[] first = output.toByteArray();
+			output.reset();
+			compressed.write(LAST_EVENTS.getBytes(StandardCharsets.UTF_8));
+			compressed.close();
+			byte[] last = output.toByteArray();
+
+			MoonshotInflater inflater = new MoonshotInflater(encoding);
+			ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+			// The header of a gzip stream may be split too.
+			for (int i = 0; i < first.length; i++) {
+				inflated.write(inflater.inflate(first, i, 1));
+			}
+			assertThat(inflated.toString(StandardCharsets.UTF_8)).isEqualTo(FIRST_EVENT);
+			inflated.write(inflater.inflate(last, 0, last.length));
+			inflater.end();
+
+			assertThat(inflated.toString(StandardCharsets.UTF_8)).isEqualTo(FIRST_EVENT + LAST_EVENTS);
+		}
+	}
+
+	@Test
+	void sendSmallRequestsUncompressed() {
+		MoonshotRequestEncoder encoder = new MoonshotRequestEncoder(false, MoonshotCompression.gzip());
+		ChatCompletionRequest request = new ChatCompletionRequest(List.of(new ChatCompletionMessage("Hi", Role.USER)),
+				true);
+
+		MoonshotRequestEncoder.Body body = encoder.encode(request);
+
+		assertThat(body.contentEncoding()).isNull();
+		assertThat(body.acceptCompressed()).isTrue();
+		assertThat(body.content()).isEqualTo(MoonshotRequestEncoder.write(request));
+	}
+
+	private static byte[] compress(Encoding encoding, String content) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (OutputStream compressed = (encoding == Encoding.GZIP) ? new GZIPOutputStream(output)
+				: new DeflaterOutputStream(output)) {
+			compressed.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return output.toByteArray();
+	}
+
+}
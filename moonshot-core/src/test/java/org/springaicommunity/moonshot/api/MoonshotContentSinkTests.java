@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotContentSinkTests {
+
+	private static final String BODY = """
+			data: {"id":"1","choices":[{"index":0,"delta":{"role":"assistant","content":"Hello"}}]}
+
+			data: {"id":"1","choices":[{"index":0,"delta":{"content":" world\\n"}}]}
+
+			data: {"id":"1","choices":[{"index":0,"delta":{"content":"你好"},"finish_reason":"stop"}]}
+
+			data: [DONE]
+
+			""";
+
+	@Test
+	void streamContentToOutputStream() {
+		MoonshotApi moonshotApi = MoonshotApi.builder()
+			.apiKey("key")
+			.webClientBuilder(WebClient.builder()
+				.exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+					.body(BODY)
+					.build())))
+			.build();
+		CountingOutputStream output = new CountingOutputStream();
+
+		moonshotApi
+			.streamContent(new ChatCompletionRequest(List.of(new ChatCompletionMessage("Hi", Role.USER)), true),
+					MoonshotContentSink.of(output), MoonshotFlushPolicy.onNewline())
+			.block();
+
+		assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("Hello world\n你好");
+		// Once for the newline, once at the end of the stream.
+		assertThat(output.flushes).isEqualTo(2);
+	}
+
+	@Test
+	void encodeLargeDeltasToChannel() throws Exception {
+		String delta = "月".repeat(1000) + "a";
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		MoonshotContentSink sink = MoonshotContentSink.of(Channels.newChannel(output));
+		sink.write(delta);
+		sink.write(delta);
+
+		assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(delta + delta);
+	}
+
+	@Test
+	void encodeSurrogatePairSplitAcrossDeltas() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		MoonshotContentSink sink = MoonshotContentSink.of(output);
+		sink.write("Smile \uD83D");
+		sink.write("\uDE00 \uD840");
+		sink.write("\uDC0B");
+		sink.complete();
+
+		assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("Smile \uD83D\uDE00 \uD840\uDC0B");
+	}
+
+	@Test
+	void replaceHighSurrogateEndingTheContent() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		MoonshotContentSink sink = MoonshotContentSink.of(Channels.newChannel(output));
+		sink.write("End \uD83D");
+		sink.complete();
+
+		assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("End ?");
+	}
+
+	@Test
+	void writeToWriter() throws Exception {
+		StringWriter writer = new StringWriter();
+
+		MoonshotContentSink sink = MoonshotContentSink.of(writer);
+		sink.write("Hello");
+		sink.flush();
+
+		assertThat(writer).hasToString("Hello");
+	}
+
+	private static final class CountingOutputStream extends ByteArrayOutputStream {
+
+		private int flushes;
+
+		@Override
+		public void flush() {
+			this.flushes++;
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ChatCompletionFunction;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.ai.model.ModelOptionsUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotConversationSessionTests {
+
+	@Test
+	void encodeAppendedMessagesInRequest() throws Exception {
+		var session = new MoonshotConversationSession();
+		session.append(List.of(new ChatCompletionMessage("You are helpful", Role.SYSTEM),
+				new ChatCompletionMessage("What is the weather in Beijing?", Role.USER)));
+		List<ChatCompletionMessage> firstTurn = session.messages();
+
+		var toolCall = new ToolCall("call_1", "function", new ChatCompletionFunction("weather", "{}"));
+		session.append(List.of(new ChatCompletionMessage("", Role.ASSISTANT, null, null, List.of(toolCall)),
+				new ChatCompletionMessage("{\"weather\":\"sunny\"}", Role.TOOL, "weather", "call_1", null)));
+		List<ChatCompletionMessage> secondTurn = session.messages();
+
+		assertThat(session.size()).isEqualTo(4);
+		assertThat(firstTurn).hasSize(2);
+		assertThat(secondTurn).hasSize(4).startsWith(firstTurn.toArray(ChatCompletionMessage[]::new));
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(firstTurn, "moonshot-v1-8k", 0.3, true));
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(secondTurn, "moonshot-v1-8k", 0.3, true));
+	}
+
+	@Test
+	void encodeRequestWithoutOptions() throws Exception {
+		var session = new MoonshotConversationSession();
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(session.messages(), null, null, null, null, null, null,
+				null, null, null, null, null));
+
+		session.append(List.of(new ChatCompletionMessage("Hi", Role.USER)));
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(session.messages(), null, null, null, null, null, null,
+				null, null, null, null, null));
+	}
+
+	@Test
+	void rewriteTruncatedMessages() throws Exception {
+		var session = new MoonshotConversationSession();
+		session.append(List.of(new ChatCompletionMessage("Hi", Role.USER),
+				new ChatCompletionMessage("{\"weather\": \"sunny\"}", Role.TOOL, "weather", "call_1", null)));
+		List<ChatCompletionMessage> before = session.messages();
+
+		session.truncate(1);
+		session.append(List.of(new ChatCompletionMessage("[elided]", Role.TOOL, "weather", "call_1", null)));
+		List<ChatCompletionMessage> after = session.messages();
+
+		assertThat(before).extracting(ChatCompletionMessage::content).containsExactly("Hi", "{\"weather\": \"sunny\"}");
+		assertThat(after).extracting(ChatCompletionMessage::content).containsExactly("Hi", "[elided]");
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(before, "moonshot-v1-8k", 0.3, false));
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(after, "moonshot-v1-8k", 0.3, false));
+
+		session.truncate(0);
+		assertThat(session.size()).isZero();
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(session.messages(), "moonshot-v1-8k", 0.3, false));
+	}
+
+	private static void assertEncodedLikeObjectMapper(ChatCompletionRequest request) throws Exception {
+		JsonNode encoded = ModelOptionsUtils.OBJECT_MAPPER.readTree(MoonshotRequestEncoder.write(request));
+		JsonNode expected = ModelOptionsUtils.OBJECT_MAPPER.readTree(ModelOptionsUtils.toJsonString(request));
+		assertThat(encoded).isEqualTo(expected);
+	}
+
+}
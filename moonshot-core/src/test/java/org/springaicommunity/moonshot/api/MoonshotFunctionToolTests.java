@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.FunctionTool;
+import org.springframework.ai.model.ModelOptionsUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * @author agent
+ */
+class MoonshotFunctionToolTests {
+
+	private static final String SCHEMA = """
+			{"type":"object","properties":{"location":{"type":"string"},"unit":{"enum":["C","F"]}}}""";
+
+	@Test
+	void writeRawSchemaVerbatim() {
+		var tool = new FunctionTool(new FunctionTool.Function("Get the weather", "weather", SCHEMA));
+
+		assertThat(ModelOptionsUtils.toJsonString(tool)).isEqualTo("""
+				{"type":"function","function":{"description":"Get the weather","name":"weather","parameters":%s}}"""
+			.formatted(SCHEMA));
+		assertThat(tool.function().parameters()).containsEntry("type", "object").containsKey("properties");
+	}
+
+	@Test
+	void readAndConvertFunctionTools() throws Exception {
+		String json = ModelOptionsUtils
+			.toJsonString(new FunctionTool(new FunctionTool.Function("", "weather", SCHEMA)));
+
+		FunctionTool tool = ModelOptionsUtils.OBJECT_MAPPER.readValue(json, FunctionTool.class);
+
+		assertThat(tool.function().name()).isEqualTo("weather");
+		assertThat(tool.function().rawParameters()).isNull();
+		assertThat(ModelOptionsUtils.toJsonString(tool)).isEqualTo(json);
+		assertThat(ModelOptionsUtils.objectToMap(new FunctionTool(new FunctionTool.Function("", "weather", SCHEMA))))
+			.extractingByKey("function")
+			.isEqualTo(Map.of("description", "", "name", "weather", "parameters", tool.function().parameters()));
+	}
+
+	@Test
+	void rejectInvalidSchema() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new FunctionTool.Function("", "weather", "{\"type\":"));
+		assertThatIllegalArgumentException().isThrownBy(() -> new FunctionTool.Function("", "weather", "{} {}"));
+	}
+
+}
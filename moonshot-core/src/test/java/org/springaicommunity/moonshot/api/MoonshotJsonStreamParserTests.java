@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author agent
+ */
+class MoonshotJsonStreamParserTests {
+
+	@Test
+	void emitArrayElementsAsSoonAsTheyAreComplete() {
+		Sinks.Many<String> deltas = Sinks.many().unicast().onBackpressureBuffer();
+		List<Film> films = new CopyOnWriteArrayList<>();
+		MoonshotJsonStreamParser.arrayElements(deltas.asFlux(), "films", Film.class).subscribe(films::add);
+
+		deltas.tryEmitNext("{\"actor\": \"Tom\", \"films\": [{\"title\": \"Big");
+		assertThat(films).isEmpty();
+		deltas.tryEmitNext("\", \"year\": 1988}, {\"title\": \"Cast Aw");
+		assertThat(films).containsExactly(new Film("Big", 1988));
+		deltas.tryEmitNext("ay \\\"2000\\\" 漂流\", \"year\": 2000}");
+		assertThat(films).hasSize(2);
+		deltas.tryEmitNext("], \"count\": 2}");
+		deltas.tryEmitComplete();
+
+		assertThat(films).containsExactly(new Film("Big", 1988), new Film("Cast Away \"2000\" 漂流", 2000));
+	}
+
+	@Test
+	void emitElementsOfRootArray() {
+		Flux<String> deltas = Flux.just("[1, ", "2", "3, [4]", ", 5]");
+
+		assertThat(MoonshotJsonStreamParser.arrayElements(deltas, null, Object.class).collectList().block())
+			.containsExactly(1, 23, List.of(4), 5);
+	}
+
+	@Test
+	void emitTopLevelFields() {
+		Flux<String> deltas = Flux.just("{\"actor\": \"Tom\", \"films\": [{\"title\": \"Big\"}]", ", \"count\": 1}");
+
+		List<MoonshotJsonStreamParser.Field> fields = MoonshotJsonStreamParser.fields(deltas).collectList().block();
+
+		assertThat(fields).extracting(MoonshotJsonStreamParser.Field::name).containsExactly("actor", "films", "count");
+		assertThat(fields.get(1).value().get(0).get("title").asText()).isEqualTo("Big");
+		assertThat(fields.get(2).value(Integer.class)).isEqualTo(1);
+	}
+
+	@Test
+	void failOnInvalidDocument() {
+		Flux<String> deltas = Flux.just("{\"films\": [1, }");
+
+		assertThatThrownBy(() -> MoonshotJsonStreamParser.arrayElements(deltas, "films", Integer.class).blockLast())
+			.isInstanceOf(UncheckedIOException.class);
+	}
+
+	record Film(String title, int year) {
+	}
+
+}
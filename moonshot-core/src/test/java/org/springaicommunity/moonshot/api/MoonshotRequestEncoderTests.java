@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ChatCompletionFunction;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springaicommunity.moonshot.api.MoonshotApi.FunctionTool;
+import org.springaicommunity.moonshot.api.MoonshotApi.ResponseFormat;
+import org.springframework.ai.model.ModelOptionsUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotRequestEncoderTests {
+
+	private static final String SCHEMA = """
+			{"type":"object","properties":{"location":{"type":"string"}}}""";
+
+	@Test
+	void encodeLikeObjectMapper() throws Exception {
+		var toolCall = new ToolCall("call_1", "function",
+				new ChatCompletionFunction("weather", "{\"location\":\"Beijing\"}"), 0);
+		var messages = List.of(new ChatCompletionMessage("You are \"helpful\"\n", Role.SYSTEM),
+				new ChatCompletionMessage(List.of(Map.of("type", "text", "text", "Hi")), Role.USER, "user", null, null),
+				new ChatCompletionMessage("", Role.ASSISTANT, null, null, List.of(toolCall)),
+				new ChatCompletionMessage("sunny, 天气晴", Role.TOOL, "weather", "call_1", null),
+				ChatCompletionMessage.partial("It is"));
+		var request = new ChatCompletionRequest(messages, "moonshot-v1-8k", 100, 0.3, 1.0, 1, 0.5, -0.5, List.of("END"),
+				true, List.of(new FunctionTool(new FunctionTool.Function("Weather", "weather", SCHEMA))), "auto",
+				new ResponseFormat(ResponseFormat.Type.JSON_OBJECT));
+
+		assertEncodedLikeObjectMapper(request);
+		assertEncodedLikeObjectMapper(new ChatCompletionRequest(messages, "moonshot-v1-8k"));
+	}
+
+	@Test
+	void reuseBodyOfSameRequest() {
+		var encoder = new MoonshotRequestEncoder(false, null);
+		var request = new ChatCompletionRequest(List.of(new ChatCompletionMessage("Hi", Role.USER)), "moonshot-v1-8k");
+
+		byte[] body = encoder.encode(request).content();
+
+		assertThat(encoder.encode(request).content()).isSameAs(body);
+		assertThat(encoder.encode(new ChatCompletionRequest(request.messages(), request.model())).content())
+			.isNotSameAs(body)
+			.isEqualTo(body);
+	}
+
+	@Test
+	void encodeCanonicalRequestsToSameBytes() throws Exception {
+		var messages = List.of(new ChatCompletionMessage("Hi", Role.USER));
+		Map<String, Object> location = new LinkedHashMap<>();
+		location.put("type", "string");
+		location.put("description", "The city");
+		Map<String, Object> schema = new LinkedHashMap<>();
+		schema.put("type", "object");
+		schema.put("properties", Map.of("location", location));
+		var weather = new FunctionTool(new FunctionTool.Function("Weather", "weather", schema));
+		var time = new FunctionTool(new FunctionTool.Function("Time", "time", "{\"type\": \"object\"}"));
+		var rawWeather = new FunctionTool(new FunctionTool.Function("Weather", "weather", """
+				{
+				  "properties": {"location": {"description": "The city", "type": "string"}},
+				  "type": "object"
+				}"""));
+
+		byte[] first = MoonshotRequestEncoder.write(new ChatCompletionRequest(messages, "moonshot-v1-8k", null, 0.3,
+				1.0, null, null, null, null, false, List.of(weather, time), null), true);
+		byte[] second = MoonshotRequestEncoder.write(new ChatCompletionRequest(messages, "moonshot-v1-8k", null, 0.3,
+				1.0, null, null, null, null, false, List.of(time, rawWeather), null), true);
+
+		assertThat(new String(second, StandardCharsets.UTF_8)).isEqualTo(new String(first, StandardCharsets.UTF_8))
+			.contains("{\"type\":\"object\"}}},{\"type\":\"function\",\"function\":{\"description\":\"Weather\"")
+			.contains("{\"description\":\"The city\",\"type\":\"string\"}");
+		assertThat(ModelOptionsUtils.OBJECT_MAPPER.readTree(first)).isEqualTo(ModelOptionsUtils.OBJECT_MAPPER
+			.readTree(ModelOptionsUtils.toJsonString(new ChatCompletionRequest(messages, "moonshot-v1-8k", null, 0.3,
+					1.0, null, null, null, null, false, List.of(time, weather), null))));
+	}
+
+	@Test
+	void encodeCanonicalToolLoopWithStablePrefixes() {
+		var tools = List.of(new FunctionTool(new FunctionTool.Function("Weather", "weather", """
+				{"type": "object", "properties": {"location": {"type": "string"}}}""")));
+		Map<String, Object> content = new LinkedHashMap<>();
+		content.put("type", "text");
+		content.put("text", "Weather in Beijing?");
+		var session = new MoonshotConversationSession(true);
+		session.append(List.of(new ChatCompletionMessage("You are helpful", Role.SYSTEM),
+				new ChatCompletionMessage(List.of(content), Role.USER, null, null, null)));
+
+		String first = canonical(session.messages(), tools);
+		var toolCall = new ToolCall("call_1", "function",
+				new ChatCompletionFunction("weather", "{\"location\":\"Beijing\"}"), 0);
+		session.append(List.of(new ChatCompletionMessage("", Role.ASSISTANT, null, null, List.of(toolCall)),
+				new ChatCompletionMessage("sunny", Role.TOOL, "weather", "call_1", null)));
+		String second = canonical(session.messages(), tools);
+
+		var schema = MoonshotRequestEncoder.canonicalSchema(tools.get(0).function().rawParameters());
+		assertThat(schema.getValue())
+			.isEqualTo("{\"properties\":{\"location\":{\"type\":\"string\"}},\"type\":\"object\"}");
+		assertThat(MoonshotRequestEncoder.canonicalSchema(tools.get(0).function().rawParameters())).isSameAs(schema);
+		assertThat(first).contains("\"parameters\":" + schema.getValue());
+		assertThat(first).contains("{\"content\":[{\"text\":\"Weather in Beijing?\",\"type\":\"text\"}]");
+		assertThat(second).startsWith(first.substring(0, first.indexOf("}],\"model\"") + 1));
+		assertThat(second).isEqualTo(canonical(List.copyOf(session.messages()), tools));
+
+		// A session encoded otherwise is encoded again.
+		var plain = new MoonshotConversationSession();
+		plain.append(session.messages());
+		assertThat(canonical(plain.messages(), tools)).isEqualTo(second);
+	}
+
+	private static String canonical(List<ChatCompletionMessage> messages, List<FunctionTool> tools) {
+		return new String(MoonshotRequestEncoder.write(new ChatCompletionRequest(messages, "moonshot-v1-8k", null, 0.3,
+				1.0, null, null, null, null, true, tools, null), true), StandardCharsets.UTF_8);
+	}
+
+	private static void assertEncodedLikeObjectMapper(ChatCompletionRequest request) throws Exception {
+		JsonNode encoded = ModelOptionsUtils.OBJECT_MAPPER.readTree(MoonshotRequestEncoder.write(request));
+		JsonNode expected = ModelOptionsUtils.OBJECT_MAPPER.readTree(ModelOptionsUtils.toJsonString(request));
+		assertThat(encoded).isEqualTo(expected);
+	}
+
+}
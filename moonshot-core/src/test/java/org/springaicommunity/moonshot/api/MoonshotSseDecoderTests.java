@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+/**
+ * @author agent
+ */
+class MoonshotSseDecoderTests {
+
+	private static final String FIRST = "{\"id\":\"cmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1,"
+			+ "\"model\":\"moonshot-v1-8k\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"你好\"}}]}";
+
+	private static final String SECOND = "{\"id\":\"cmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1,"
+			+ "\"model\":\"moonshot-v1-8k\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"!\"},\"finish_reason\":\"stop\"}]}";
+
+	@Test
+	void decodeEventsSplitAcrossBuffers() {
+		byte[] body = ("data: " + FIRST + "\n\n: keep-alive\n\ndata: " + SECOND + "\n\ndata: [DONE]\n\n")
+			.getBytes(StandardCharsets.UTF_8);
+
+		MoonshotSseDecoder decoder = new MoonshotSseDecoder();
+		List<ChatCompletionChunk> chunks = new ArrayList<>();
+		// Small slices split both the events and the multibyte characters.
+		for (int offset = 0; offset < body.length; offset += 7) {
+			DataBuffer buffer = DefaultDataBufferFactory.sharedInstance
+				.wrap(Arrays.copyOfRange(body, offset, Math.min(offset + 7, body.length)));
+			chunks.addAll(decoder.decode(buffer));
+		}
+
+		assertThat(decoder.isDone()).isTrue();
+		assertThat(chunks).hasSize(2);
+		assertThat(chunks.get(0).id()).isEqualTo("cmpl-1");
+		assertThat(chunks.get(0).choices().get(0).delta().content()).isEqualTo("你好");
+		assertThat(chunks.get(1).choices().get(0).finishReason())
+			.isEqualTo(MoonshotApi.ChatCompletionFinishReason.STOP);
+	}
+
+	@Test
+	void decodeCarriageReturnLineEndings() {
+		byte[] body = ("data:" + FIRST + "\r\n\r\ndata: [DONE]\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+
+		MoonshotSseDecoder decoder = new MoonshotSseDecoder();
+		List<ChatCompletionChunk> chunks = decoder.decode(body, 0, body.length);
+
+		assertThat(chunks).hasSize(1);
+		assertThat(decoder.isDone()).isTrue();
+	}
+
+	@Test
+	void ignoreInputAfterDone() {
+		byte[] body = ("data: [DONE]\n\ndata: " + FIRST + "\n\n").getBytes(StandardCharsets.UTF_8);
+
+		MoonshotSseDecoder decoder = new MoonshotSseDecoder();
+
+		assertThat(decoder.decode(body, 0, body.length)).isEmpty();
+		assertThat(decoder.complete()).isEmpty();
+	}
+
+	@Test
+	void completeDispatchesUnterminatedEvent() {
+		byte[] body = ("data: " + FIRST).getBytes(StandardCharsets.UTF_8);
+
+		MoonshotSseDecoder decoder = new MoonshotSseDecoder();
+
+		assertThat(decoder.decode(body, 0, body.length)).isEmpty();
+		assertThat(decoder.complete()).hasSize(1);
+	}
+
+	@Test
+	void malformedPayload() {
+		byte[] body = "data: {\"id\":\n\n".getBytes(StandardCharsets.UTF_8);
+
+		MoonshotSseDecoder decoder = new MoonshotSseDecoder();
+
+		assertThatIllegalStateException().isThrownBy(() -> decoder.decode(body, 0, body.length))
+			.withMessageContaining("Failed to decode chat completion chunk");
+	}
+
+}
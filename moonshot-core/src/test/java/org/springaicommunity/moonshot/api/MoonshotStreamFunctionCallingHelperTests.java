@@ -0,0 +1,373 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk.ChunkChoice;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionFinishReason;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ChatCompletionFunction;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.ToolCall;
+import org.springaicommunity.moonshot.api.MoonshotStreamFunctionCallingHelper.ChunkAccumulator;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ */
+class MoonshotStreamFunctionCallingHelperTests {
+
+	private final MoonshotStreamFunctionCallingHelper helper = new MoonshotStreamFunctionCallingHelper();
+
+	@Test
+	void accumulateToolCallArguments() {
+		ChunkAccumulator accumulator = this.helper.accumulator();
+		accumulator
+			.add(toolCallChunk(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "")), null));
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			String delta = "{\"n\":" + i + "}";
+			expected.append(delta);
+			accumulator.add(toolCallChunk(new ToolCall(null, null, new ChatCompletionFunction(null, delta)), null));
+		}
+		accumulator.add(toolCallChunk(null, ChatCompletionFinishReason.TOOL_CALLS));
+
+		ChatCompletionChunk merged = accumulator.build();
+
+		ChunkChoice choice = merged.choices().get(0);
+		assertThat(choice.finishReason()).isEqualTo(ChatCompletionFinishReason.TOOL_CALLS);
+		assertThat(choice.delta().role()).isEqualTo(Role.ASSISTANT);
+		assertThat(choice.delta().toolCalls()).hasSize(1);
+		ToolCall toolCall = choice.delta().toolCalls().get(0);
+		assertThat(toolCall.id()).isEqualTo("call-1");
+		assertThat(toolCall.function().name()).isEqualTo("weather");
+		assertThat(toolCall.function().arguments()).isEqualTo(expected.toString());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void accumulateMatchesPairwiseMerge() {
+		List<ChatCompletionChunk> chunks = List.of(
+				toolCallChunk(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{\"city\"")),
+						null),
+				toolCallChunk(new ToolCall(null, null, new ChatCompletionFunction(null, ":\"Paris\"}")), null),
+				toolCallChunk(new ToolCall("call-2", "function", new ChatCompletionFunction("time", "{}")), null),
+				toolCallChunk(null, ChatCompletionFinishReason.TOOL_CALLS));
+
+		ChunkAccumulator accumulator = this.helper.accumulator();
+		ChatCompletionChunk merged = null;
+		for (ChatCompletionChunk chunk : chunks) {
+			accumulator.add(chunk);
+			merged = this.helper.merge(merged, chunk);
+		}
+
+		assertThat(accumulator.build()).isEqualTo(merged);
+	}
+
+	@Test
+	void accumulateParallelToolCallsByIndex() {
+		ChunkAccumulator accumulator = this.helper.accumulator();
+		accumulator.add(toolCallsChunk(
+				List.of(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{\"city\":"), 0),
+						new ToolCall("call-2", "function", new ChatCompletionFunction("time", "{\"zone\":"), 1)),
+				null));
+		accumulator
+			.add(toolCallsChunk(List.of(new ToolCall(null, null, new ChatCompletionFunction(null, "\"UTC\"}"), 1),
+					new ToolCall(null, null, new ChatCompletionFunction(null, "\"Paris\"}"), 0)), null));
+		accumulator.add(
+				toolCallsChunk(List.of(new ToolCall("call-3", "function", new ChatCompletionFunction("news", "{}"), 2)),
+						ChatCompletionFinishReason.TOOL_CALLS));
+
+		List<ToolCall> toolCalls = accumulator.build().choices().get(0).delta().toolCalls();
+
+		assertThat(toolCalls).extracting(ToolCall::id).containsExactly("call-1", "call-2", "call-3");
+		assertThat(toolCalls).extracting(toolCall -> toolCall.function().arguments())
+			.containsExactly("{\"city\":\"Paris\"}", "{\"zone\":\"UTC\"}", "{}");
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void pairwiseMergeParallelToolCallsByIndex() {
+		ChatCompletionChunk merged = this.helper.merge(
+				toolCallsChunk(
+						List.of(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{"), 0),
+								new ToolCall("call-2", "function", new ChatCompletionFunction("time", "{"), 1)),
+						null),
+				toolCallsChunk(List.of(new ToolCall(null, null, new ChatCompletionFunction(null, "}"), 0),
+						new ToolCall(null, null, new ChatCompletionFunction(null, "}"), 1)), null));
+
+		assertThat(merged.choices().get(0).delta().toolCalls()).extracting(toolCall -> toolCall.function().arguments())
+			.containsExactly("{}", "{}");
+	}
+
+	@Test
+	void mergeToolCallWindowsPerSubscriber() {
+		Flux<ChatCompletionChunk> merged = this.helper.mergeToolCallWindows(Flux.just(contentChunk("Hi"),
+				toolCallChunk(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{")), null),
+				toolCallChunk(new ToolCall(null, null, new ChatCompletionFunction(null, "}")), null),
+				toolCallChunk(null, ChatCompletionFinishReason.TOOL_CALLS), contentChunk("Bye")));
+
+		for (int i = 0; i < 2; i++) {
+			List<ChatCompletionChunk> chunks = merged.collectList().block();
+			assertThat(chunks).hasSize(3);
+			assertThat(chunks.get(1).choices().get(0).delta().toolCalls()).singleElement()
+				.extracting(toolCall -> toolCall.function().arguments())
+				.isEqualTo("{}");
+		}
+	}
+
+	@Test
+	void mergeToolCallWindowsHonorsDemand() {
+		Flux<ChatCompletionChunk> merged = this.helper.mergeToolCallWindows(Flux.just(contentChunk("Hi"),
+				toolCallChunk(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{")), null),
+				toolCallChunk(new ToolCall(null, null, new ChatCompletionFunction(null, "}")), null)));
+
+		List<ChatCompletionChunk> received = new ArrayList<>();
+		AtomicBoolean completed = new AtomicBoolean();
+		BaseSubscriber<ChatCompletionChunk> subscriber = new BaseSubscriber<>() {
+
+			@Override
+			protected void hookOnSubscribe(Subscription subscription) {
+				subscription.request(1);
+			}
+
+			@Override
+			protected void hookOnNext(ChatCompletionChunk chunk) {
+				received.add(chunk);
+			}
+
+			@Override
+			protected void hookOnComplete() {
+				completed.set(true);
+			}
+
+		};
+		merged.subscribe(subscriber);
+
+		// The window left open at the end of the stream waits for demand.
+		assertThat(received).hasSize(1);
+		assertThat(completed).isFalse();
+
+		subscriber.request(1);
+
+		assertThat(received).hasSize(2);
+		assertThat(received.get(1).choices().get(0).delta().toolCalls().get(0).function().arguments()).isEqualTo("{}");
+		assertThat(completed).isTrue();
+	}
+
+	@Test
+	void mergeToolCallWindowsRelaysInterleavedContent() {
+		var delta = new ChatCompletionMessage("Let me check. ", Role.ASSISTANT, null, null,
+				List.of(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{"), 0)));
+		ChatCompletionChunk start = new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(0, delta, null, null)));
+
+		List<ChatCompletionChunk> chunks = this.helper
+			.mergeToolCallWindows(
+					Flux.just(start, contentChunk("One moment."),
+							toolCallChunk(new ToolCall(null, null, new ChatCompletionFunction(null, "}"), 0),
+									ChatCompletionFinishReason.TOOL_CALLS)))
+			.collectList()
+			.block();
+
+		assertThat(chunks).hasSize(3);
+		assertThat(chunks.get(0).choices().get(0).delta().content()).isEqualTo("Let me check. ");
+		assertThat(chunks.get(0).choices().get(0).delta().toolCalls()).isNull();
+		assertThat(chunks.get(1).choices().get(0).delta().content()).isEqualTo("One moment.");
+		ChatCompletionMessage merged = chunks.get(2).choices().get(0).delta();
+		assertThat(merged.content()).isEqualTo("");
+		assertThat(merged.toolCalls()).singleElement()
+			.extracting(toolCall -> toolCall.function().arguments())
+			.isEqualTo("{}");
+	}
+
+	@Test
+	void toStreamEvents() {
+		List<MoonshotStreamEvent> events = this.helper.toStreamEvents(Flux.just(contentChunk("Hi"),
+				toolCallChunk(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{"), 0), null),
+				toolCallChunk(new ToolCall(null, null, new ChatCompletionFunction(null, "}"), 0), null),
+				toolCallChunk(null, ChatCompletionFinishReason.TOOL_CALLS)))
+			.collectList()
+			.block();
+
+		assertThat(events).containsExactly(new MoonshotStreamEvent.ContentDelta(0, "Hi"),
+				new MoonshotStreamEvent.ToolCallStarted(0, 0, "call-1", "weather"),
+				new MoonshotStreamEvent.ToolCallArgumentsDelta(0, 0, "{"),
+				new MoonshotStreamEvent.ToolCallArgumentsDelta(0, 0, "}"),
+				new MoonshotStreamEvent.ToolCallCompleted(0, 0,
+						new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{}"), 0)),
+				new MoonshotStreamEvent.Finish(0, ChatCompletionFinishReason.TOOL_CALLS));
+	}
+
+	@Test
+	void toStreamEventsCompletesOpenToolCallsAtTheEnd() {
+		List<MoonshotStreamEvent> events = this.helper
+			.toStreamEvents(Flux.just(toolCallChunk(
+					new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{}")), null)))
+			.collectList()
+			.block();
+
+		assertThat(events).last()
+			.isEqualTo(new MoonshotStreamEvent.ToolCallCompleted(0, 0,
+					new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{}"))));
+	}
+
+	@Test
+	void toStreamEventsCompletesToolCallOnceArgumentsAreComplete() {
+		List<MoonshotStreamEvent> events = this.helper.toStreamEvents(Flux.just(
+				toolCallChunk(new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{}"), 0), null),
+				toolCallChunk(new ToolCall("call-2", "function", new ChatCompletionFunction("time", "{"), 1), null),
+				toolCallChunk(null, ChatCompletionFinishReason.TOOL_CALLS)))
+			.collectList()
+			.block();
+
+		assertThat(events).extracting(Object::getClass)
+			.containsExactly(MoonshotStreamEvent.ToolCallStarted.class,
+					MoonshotStreamEvent.ToolCallArgumentsDelta.class, MoonshotStreamEvent.ToolCallCompleted.class,
+					MoonshotStreamEvent.ToolCallStarted.class, MoonshotStreamEvent.ToolCallArgumentsDelta.class,
+					MoonshotStreamEvent.ToolCallCompleted.class, MoonshotStreamEvent.Finish.class);
+		assertThat(events.get(2)).isEqualTo(new MoonshotStreamEvent.ToolCallCompleted(0, 0,
+				new ToolCall("call-1", "function", new ChatCompletionFunction("weather", "{}"), 0)));
+	}
+
+	@Test
+	void toStreamEventsReportsUsageAndFinish() {
+		MoonshotApi.Usage usage = new MoonshotApi.Usage(10, 15, 5);
+		var delta = new ChatCompletionMessage("!", Role.ASSISTANT);
+		ChatCompletionChunk last = new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(0, delta, ChatCompletionFinishReason.STOP, usage)));
+
+		List<MoonshotStreamEvent> events = this.helper.toStreamEvents(Flux.just(contentChunk("Hi"), last))
+			.collectList()
+			.block();
+
+		assertThat(events).containsExactly(new MoonshotStreamEvent.ContentDelta(0, "Hi"),
+				new MoonshotStreamEvent.ContentDelta(0, "!"), new MoonshotStreamEvent.Usage(0, usage),
+				new MoonshotStreamEvent.Finish(0, ChatCompletionFinishReason.STOP));
+	}
+
+	@Test
+	void mergeToolCallWindowsPerChoice() {
+		Flux<ChatCompletionChunk> chunks = Flux.just(choiceChunk(0,
+				toolCallDelta(new ToolCall("call-1", "function", new ChatCompletionFunction("a", "{"), 0)), null),
+				choiceChunk(1, new ChatCompletionMessage("Hello", Role.ASSISTANT), null),
+				choiceChunk(1,
+						toolCallDelta(new ToolCall("call-2", "function", new ChatCompletionFunction("b", "["), 0)),
+						null),
+				choiceChunk(0, toolCallDelta(new ToolCall(null, null, new ChatCompletionFunction(null, "}"), 0)),
+						ChatCompletionFinishReason.TOOL_CALLS),
+				choiceChunk(1, toolCallDelta(new ToolCall(null, null, new ChatCompletionFunction(null, "]"), 0)),
+						null));
+
+		List<ChatCompletionChunk> merged = this.helper.mergeToolCallWindows(chunks).collectList().block();
+
+		assertThat(merged).hasSize(3);
+		assertThat(merged.get(0).choices().get(0).delta().content()).isEqualTo("Hello");
+		assertThat(merged.get(1).choices().get(0).index()).isEqualTo(0);
+		assertThat(merged.get(1).choices().get(0).delta().toolCalls().get(0).function().arguments()).isEqualTo("{}");
+		// The window of the second choice is still open when the stream completes.
+		assertThat(merged.get(2).choices().get(0).index()).isEqualTo(1);
+		assertThat(merged.get(2).choices().get(0).delta().toolCalls().get(0).function().arguments()).isEqualTo("[]");
+	}
+
+	@Test
+	void splitChoices() {
+		ChatCompletionChunk chunk = new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(0, new ChatCompletionMessage("a", Role.ASSISTANT), null, null),
+						new ChunkChoice(1, new ChatCompletionMessage("b", Role.ASSISTANT), null, null)));
+		List<ChatCompletionChunk> single = List.of(contentChunk("c"));
+
+		assertThat(this.helper.splitChoices(single)).isSameAs(single);
+		assertThat(this.helper.splitChoices(List.of(chunk)))
+			.extracting(split -> split.choices().get(0).delta().content())
+			.containsExactly("a", "b");
+	}
+
+	@Test
+	void groupByChoice() {
+		Flux<ChatCompletionChunk> chunks = Flux.just(
+				choiceChunk(0, new ChatCompletionMessage("a", Role.ASSISTANT), null),
+				choiceChunk(1, new ChatCompletionMessage("x", Role.ASSISTANT), null),
+				choiceChunk(0, new ChatCompletionMessage("b", Role.ASSISTANT), null),
+				choiceChunk(1, new ChatCompletionMessage("y", Role.ASSISTANT), ChatCompletionFinishReason.STOP));
+
+		Map<Integer, String> contents = this.helper.groupByChoice(chunks)
+			.flatMap(group -> group.map(chunk -> chunk.choices().get(0).delta().content())
+				.reduce(String::concat)
+				.map(content -> Map.entry(group.key(), content)))
+			.collectMap(Map.Entry::getKey, Map.Entry::getValue)
+			.block();
+
+		assertThat(contents).containsExactlyInAnyOrderEntriesOf(Map.of(0, "ab", 1, "xy"));
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void pairwiseMergeChoicesByIndex() {
+		ChatCompletionChunk merged = this.helper.merge(
+				new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+						List.of(new ChunkChoice(0, new ChatCompletionMessage("a", Role.ASSISTANT), null, null),
+								new ChunkChoice(1, new ChatCompletionMessage("x", Role.ASSISTANT), null, null))),
+				choiceChunk(1, new ChatCompletionMessage("y", Role.ASSISTANT), null));
+
+		assertThat(merged.choices()).extracting(choice -> choice.delta().content()).containsExactly("a", "y");
+	}
+
+	@Test
+	void singleChunkIsReturnedAsIs() {
+		ChatCompletionChunk chunk = toolCallChunk(null, ChatCompletionFinishReason.STOP);
+
+		assertThat(this.helper.accumulator().add(chunk).build()).isSameAs(chunk);
+	}
+
+	private static ChatCompletionChunk contentChunk(String content) {
+		return new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(0, new ChatCompletionMessage(content, Role.ASSISTANT), null, null)));
+	}
+
+	private static ChatCompletionChunk choiceChunk(int index, ChatCompletionMessage delta,
+			ChatCompletionFinishReason finishReason) {
+		return new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(index, delta, finishReason, null)));
+	}
+
+	private static ChatCompletionMessage toolCallDelta(ToolCall toolCall) {
+		return new ChatCompletionMessage(null, null, null, null, List.of(toolCall));
+	}
+
+	private static ChatCompletionChunk toolCallChunk(ToolCall toolCall, ChatCompletionFinishReason finishReason) {
+		return toolCallsChunk(toolCall != null ? List.of(toolCall) : null, finishReason);
+	}
+
+	private static ChatCompletionChunk toolCallsChunk(List<ToolCall> toolCalls,
+			ChatCompletionFinishReason finishReason) {
+		var delta = new ChatCompletionMessage(null, null, null, null, toolCalls);
+		return new ChatCompletionChunk("id", "chat.completion.chunk", 1L, "model",
+				List.of(new ChunkChoice(0, delta, finishReason, null)));
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springaicommunity.moonshot.api;
+
+import org.junit.jupiter.api.Test;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionChunk;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionMessage.Role;
+import org.springaicommunity.moonshot.api.MoonshotApi.ChatCompletionRequest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author agent
+ */
+class MoonshotStreamWatchdogTests {
+
+	private static final String FIRST_EVENT = """
+			data: {"id":"1","choices":[{"index":0,"delta":{"role":"assistant","content":"Hello"}}]}
+
+			""";
+
+	private static final String LAST_EVENTS = """
+			data: {"id":"1","choices":[{"index":0,"delta":{"content":" world"},"finish_reason":"stop"}]}
+
+			data: [DONE]
+
+			""";
+
+	private static final ChatCompletionRequest REQUEST = new ChatCompletionRequest(
+			List.of(new ChatCompletionMessage("Hi", Role.USER)), true);
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@Test
+	void retryStreamStalledBeforeFirstChunk() {
+		MoonshotApi moonshotApi = moonshotApi(
+				() -> (this.requests.get() == 1) ? Flux.never() : Flux.just(buffer(FIRST_EVENT), buffer(LAST_EVENTS)),
+				new MoonshotStreamWatchdog(Duration.ofMillis(100), Duration.ofSeconds(5), 1));
+
+		List<ChatCompletionChunk> chunks = moonshotApi.chatCompletionStream(REQUEST).collectList().block();
+
+		assertThat(this.requests).hasValue(2);
+		assertThat(chunks).extracting(chunk -> chunk.choices().get(0).delta().content())
+			.containsExactly("Hello", " world");
+	}
+
+	@Test
+	void failWhenRetriesAreExhausted() {
+		MoonshotApi moonshotApi = moonshotApi(Flux::never, new MoonshotStreamWatchdog(Duration.ofMillis(50), null, 2));
+
+		assertThatThrownBy(() -> moonshotApi.chatCompletionStream(REQUEST).blockLast())
+			.isInstanceOfSatisfying(MoonshotStreamStallException.class, ex -> assertThat(ex.isFirstChunk()).isTrue());
+		assertThat(this.requests).hasValue(3);
+	}
+
+	@Test
+	void abortStreamStalledBetweenChunksWithoutRetry() {
+		AtomicBoolean cancelled = new AtomicBoolean();
+		MoonshotApi moonshotApi = moonshotApi(
+				() -> Flux.concat(Flux.just(buffer(FIRST_EVENT)), Flux.<DataBuffer>never())
+					.doOnCancel(() -> cancelled.set(true)),
+				new MoonshotStreamWatchdog(Duration.ofSeconds(5), Duration.ofMillis(100), 3));
+		List<String> contents = new ArrayList<>();
+
+		assertThatThrownBy(() -> moonshotApi.chatCompletionStream(REQUEST)
+			.doOnNext(chunk -> contents.add(chunk.choices().get(0).delta().content()))
+			.blockLast()).isInstanceOfSatisfying(MoonshotStreamStallException.class, ex -> {
+				assertThat(ex.isFirstChunk()).isFalse();
+				assertThat(ex.getTimeout()).isEqualTo(Duration.ofMillis(100));
+			});
+		assertThat(contents).containsExactly("Hello");
+		assertThat(this.requests).hasValue(1);
+		assertThat(cancelled).isTrue();
+	}
+
+	private MoonshotApi moonshotApi(Supplier<Flux<DataBuffer>> body, MoonshotStreamWatchdog watchdog) {
+		return MoonshotApi.builder().apiKey("key").webClientBuilder(WebClient.builder().exchangeFunction(request -> {
+			this.requests.incrementAndGet();
+			return Mono.just(ClientResponse.create(HttpStatus.OK)
+				.header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+				.body(body.get())
+				.build());
+		})).streamWatchdog(watchdog).build();
+	}
+
+	private static DataBuffer buffer(String content) {
+		return DefaultDataBufferFactory.sharedInstance.wrap(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -35,8 +35,10 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.client.RestClientAutoConfiguration;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBinding;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.convert.converter.Converter;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -84,6 +86,7 @@ public class MoonshotChatAutoConfiguration {
 					toolExecutionEligibilityPredicate.getIfUnique(DefaultToolExecutionEligibilityPredicate::new))
 			.retryTemplate(retryTemplate)
 			.observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+			.toolSelector(chatProperties.getToolSelection().toToolSelector())
 			.build();
 
 		observationConvention.ifAvailable(chatModel::setObservationConvention);
@@ -97,6 +100,17 @@ public class MoonshotChatAutoConfiguration {
 		return new RetryTemplate();
 	}
 
+	/**
+	 * Bind the response format type leniently, so that {@code json} is accepted as well
+	 * as the API value {@code json_object}.
+	 * @return the converter used to bind the response format type.
+	 */
+	@Bean
+	@ConfigurationPropertiesBinding
+	public static ResponseFormatTypeConverter moonshotResponseFormatTypeConverter() {
+		return new ResponseFormatTypeConverter();
+	}
+
 	private MoonshotApi moonshotApi(MoonshotChatProperties chatProperties, MoonshotCommonProperties commonProperties,
 			RestClient.Builder restClientBuilder, WebClient.Builder webClientBuilder,
 			ResponseErrorHandler responseErrorHandler) {
@@ -116,7 +130,18 @@ public class MoonshotChatAutoConfiguration {
 			.restClientBuilder(restClientBuilder)
 			.webClientBuilder(webClientBuilder)
 			.responseErrorHandler(responseErrorHandler)
+			.canonicalRequests(chatProperties.isCanonicalRequests())
+			.compression(chatProperties.getCompression().toCompression())
 			.build();
 	}
 
+	static class ResponseFormatTypeConverter implements Converter<String, MoonshotApi.ResponseFormat.Type> {
+
+		@Override
+		public MoonshotApi.ResponseFormat.Type convert(String source) {
+			return MoonshotApi.ResponseFormat.Type.from(source);
+		}
+
+	}
+
 }
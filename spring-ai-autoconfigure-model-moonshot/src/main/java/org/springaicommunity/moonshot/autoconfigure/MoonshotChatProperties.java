@@ -17,10 +17,15 @@
 package org.springaicommunity.moonshot.autoconfigure;
 
 import org.springaicommunity.moonshot.MoonshotChatOptions;
+import org.springaicommunity.moonshot.MoonshotToolSelector;
 import org.springaicommunity.moonshot.api.MoonshotApi;
+import org.springaicommunity.moonshot.api.MoonshotCompression;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import static org.springaicommunity.moonshot.api.MoonshotConstants.DEFAULT_COMPLETIONS_PATH;
 
 /**
@@ -40,6 +45,16 @@ public class MoonshotChatProperties extends MoonshotParentProperties {
 
 	private String completionsPath = DEFAULT_COMPLETIONS_PATH;
 
+	/**
+	 * Whether to serialize the requests canonically, to maximize the server's prompt
+	 * cache hits.
+	 */
+	private boolean canonicalRequests;
+
+	private final Compression compression = new Compression();
+
+	private final ToolSelection toolSelection = new ToolSelection();
+
 	@NestedConfigurationProperty
 	private MoonshotChatOptions options = MoonshotChatOptions.builder()
 		.model(DEFAULT_CHAT_MODEL)
@@ -62,4 +77,114 @@ public class MoonshotChatProperties extends MoonshotParentProperties {
 		this.completionsPath = completionsPath;
 	}
 
+	public boolean isCanonicalRequests() {
+		return this.canonicalRequests;
+	}
+
+	public void setCanonicalRequests(boolean canonicalRequests) {
+		this.canonicalRequests = canonicalRequests;
+	}
+
+	public Compression getCompression() {
+		return this.compression;
+	}
+
+	public ToolSelection getToolSelection() {
+		return this.toolSelection;
+	}
+
+	/**
+	 * Compression of the chat completion requests and responses.
+	 */
+	public static class Compression {
+
+		/**
+		 * Whether to compress the request bodies and accept compressed responses.
+		 */
+		private boolean enabled;
+
+		/**
+		 * The content encoding of the compressed request bodies.
+		 */
+		private MoonshotCompression.Encoding encoding = MoonshotCompression.Encoding.GZIP;
+
+		/**
+		 * The minimum size, in bytes, of the request bodies to compress.
+		 */
+		private int minRequestSize = MoonshotCompression.DEFAULT_MIN_REQUEST_SIZE;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public MoonshotCompression.Encoding getEncoding() {
+			return this.encoding;
+		}
+
+		public void setEncoding(MoonshotCompression.Encoding encoding) {
+			this.encoding = encoding;
+		}
+
+		public int getMinRequestSize() {
+			return this.minRequestSize;
+		}
+
+		public void setMinRequestSize(int minRequestSize) {
+			this.minRequestSize = minRequestSize;
+		}
+
+		/**
+		 * @return the compression settings, or null if the compression is disabled.
+		 */
+		public MoonshotCompression toCompression() {
+			return this.enabled ? new MoonshotCompression(this.encoding, this.minRequestSize) : null;
+		}
+
+	}
+
+	/**
+	 * Selection of the tools relevant to each request.
+	 */
+	public static class ToolSelection {
+
+		/**
+		 * The maximum number of tools of a request, not counting the tools already called
+		 * in the conversation. All the tools are sent when not set.
+		 */
+		private Integer maxTools;
+
+		/**
+		 * The names of the tools sent in every request.
+		 */
+		private Set<String> alwaysIncluded = new LinkedHashSet<>();
+
+		public Integer getMaxTools() {
+			return this.maxTools;
+		}
+
+		public void setMaxTools(Integer maxTools) {
+			this.maxTools = maxTools;
+		}
+
+		public Set<String> getAlwaysIncluded() {
+			return this.alwaysIncluded;
+		}
+
+		public void setAlwaysIncluded(Set<String> alwaysIncluded) {
+			this.alwaysIncluded = alwaysIncluded;
+		}
+
+		/**
+		 * @return the tool selector, or null if the tool selection is disabled.
+		 */
+		public MoonshotToolSelector toToolSelector() {
+			return (this.maxTools != null) ? new MoonshotToolSelector(this.maxTools, this.alwaysIncluded) : null;
+		}
+
+	}
+
 }
@@ -18,6 +18,8 @@ package org.springaicommunity.moonshot.autoconfigure;
 
 import org.junit.jupiter.api.Test;
 import org.springaicommunity.moonshot.MoonshotChatModel;
+import org.springaicommunity.moonshot.api.MoonshotApi;
+import org.springaicommunity.moonshot.api.MoonshotCompression;
 import org.springframework.ai.retry.autoconfigure.SpringAiRetryAutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
 import org.springframework.boot.autoconfigure.web.client.RestClientAutoConfiguration;
@@ -67,7 +69,13 @@ public class MoonshotPropertiesTests {
 				"spring.ai.moonshot.chat.base-url=TEST_BASE_URL2",
 				"spring.ai.moonshot.chat.api-key=456",
 				"spring.ai.moonshot.chat.options.model=MODEL_XYZ",
-				"spring.ai.moonshot.chat.options.temperature=0.55")
+				"spring.ai.moonshot.chat.options.temperature=0.55",
+				"spring.ai.moonshot.chat.canonical-requests=true",
+				"spring.ai.moonshot.chat.compression.enabled=true",
+				"spring.ai.moonshot.chat.compression.encoding=deflate",
+				"spring.ai.moonshot.chat.compression.min-request-size=4096",
+				"spring.ai.moonshot.chat.tool-selection.max-tools=8",
+				"spring.ai.moonshot.chat.tool-selection.always-included=search,sendEmail")
 				// @formatter:on
 			.withConfiguration(AutoConfigurations.of(SpringAiRetryAutoConfiguration.class,
 					RestClientAutoConfiguration.class, MoonshotChatAutoConfiguration.class))
@@ -80,6 +88,12 @@ public class MoonshotPropertiesTests {
 
 				assertThat(chatProperties.getApiKey()).isEqualTo("456");
 				assertThat(chatProperties.getBaseUrl()).isEqualTo("TEST_BASE_URL2");
+				assertThat(chatProperties.isCanonicalRequests()).isTrue();
+				assertThat(chatProperties.getCompression().toCompression())
+					.isEqualTo(new MoonshotCompression(MoonshotCompression.Encoding.DEFLATE, 4096));
+				assertThat(chatProperties.getToolSelection().getMaxTools()).isEqualTo(8);
+				assertThat(chatProperties.getToolSelection().getAlwaysIncluded()).containsExactly("search",
+						"sendEmail");
 
 				assertThat(chatProperties.getOptions().getModel()).isEqualTo("MODEL_XYZ");
 				assertThat(chatProperties.getOptions().getTemperature()).isEqualTo(0.55);
@@ -125,6 +139,8 @@ public class MoonshotPropertiesTests {
 				assertThat(chatProperties.getOptions().getStop()).contains("boza", "koza");
 				assertThat(chatProperties.getOptions().getTemperature()).isEqualTo(0.55);
 				assertThat(chatProperties.getOptions().getTopP()).isEqualTo(0.56);
+				assertThat(chatProperties.getOptions().getResponseFormat())
+					.isEqualTo(new MoonshotApi.ResponseFormat(MoonshotApi.ResponseFormat.Type.JSON_OBJECT));
 
 				assertThat(chatProperties.getOptions().getUser()).isEqualTo("userXYZ");
 			});